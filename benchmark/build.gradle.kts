@@ -0,0 +1,142 @@
+import com.github.kr328.gradle.i18n.*
+
+plugins {
+    kotlin("jvm") version "1.8.20"
+    id("me.champeau.jmh") version "0.7.1"
+    id("com.github.kr328.gradle.i18n") apply false
+}
+
+val catalogKeys = providers.gradleProperty("i18n.benchmark.keys").map(String::toInt).orElse(1000)
+val catalogLanguages = providers.gradleProperty("i18n.benchmark.languages").map { it.split(",") }.orElse(listOf("zh", "ja", "fr"))
+val benchmarkJvmBackend = providers.gradleProperty("i18n.benchmark.jvmBackend").map(JvmBackend::valueOf).orElse(JvmBackend.ResourceBundle)
+val benchmarkPrecompiledFormat = providers.gradleProperty("i18n.benchmark.precompiled").map(String::toBoolean).orElse(false)
+val benchmarkSparseResources = providers.gradleProperty("i18n.benchmark.sparse").map(String::toBoolean).orElse(false)
+val benchmarkShardSize = providers.gradleProperty("i18n.benchmark.shardSize").map(String::toInt).orElse(0)
+
+// Root declares plain_N and format_N pairs, languages translate every other pair so fallbacks are exercised too.
+abstract class GenerateCatalog : DefaultTask() {
+    @get:Input
+    abstract val keys: Property<Int>
+
+    @get:Input
+    abstract val languages: ListProperty<String>
+
+    @get:OutputDirectory
+    abstract val outputDirectory: DirectoryProperty
+
+    @TaskAction
+    fun generate() {
+        val root = outputDirectory.get().asFile
+        root.deleteRecursively()
+
+        fun write(group: String, step: Int, prefix: String) {
+            val text = buildString {
+                appendLine("strings:")
+                for (index in 0 until keys.get() / 2 step step) {
+                    appendLine("  plain_$index: \"$prefix plain text $index\"")
+                    appendLine("  format_$index: \"$prefix {count: %d} items of {name: %s}, ratio {ratio: %.2f}\"")
+                }
+            }
+
+            root.resolve(group).apply { mkdirs() }.resolve("strings.yaml").writeText(text)
+        }
+
+        write("root", 1, "Root")
+        for (language in languages.get()) {
+            write(language, 2, language)
+        }
+    }
+}
+
+val generateCatalog = tasks.register<GenerateCatalog>("generateBenchmarkCatalog") {
+    keys.set(catalogKeys)
+    languages.set(catalogLanguages)
+    outputDirectory.set(layout.buildDirectory.dir("catalog"))
+}
+
+val generateI18nSources = tasks.register<I18nTask>("generateI18nSources") {
+    i18nDirectory.set(generateCatalog.flatMap { it.outputDirectory })
+    packageName.set("com.github.kr328.gradle.i18n.benchmark")
+    languages.set(catalogLanguages.map { names ->
+        names.map { Language(it).apply { jvmLanguageTag = it; androidLanguageTag = it } }
+    })
+    isJvmEnabled.set(true)
+    isAndroidEnabled.set(false)
+    jvmBackend.set(benchmarkJvmBackend)
+    isSparseResourcesEnabled.set(benchmarkSparseResources)
+    androidResourceDirectory.set(layout.buildDirectory.dir("generated/i18n/androidResource"))
+    jvmResourceDirectory.set(layout.buildDirectory.dir("generated/i18n/jvmResource"))
+    schemaFile.set(layout.buildDirectory.file("intermediates/i18n/schema.txt"))
+    jvmTemplatesFile.set(layout.buildDirectory.file(benchmarkPrecompiledFormat.map {
+        if (it) "intermediates/i18n/jvmTemplates.bin" else null
+    }))
+    fallbackReportFile.set(layout.buildDirectory.file("reports/i18n/fallback.txt"))
+    stateDirectory.set(layout.buildDirectory.dir("intermediates/i18n/state"))
+    cacheDirectory.set(layout.buildDirectory.dir("intermediates/i18n/cache"))
+    parseParallelism.set(gradle.startParameter.maxWorkerCount)
+}
+
+val generateI18nKotlin = tasks.register<I18nKotlinTask>("generateI18nKotlin") {
+    schemaFile.set(generateI18nSources.flatMap { it.schemaFile })
+    jvmTemplatesFile.set(generateI18nSources.flatMap { it.jvmTemplatesFile })
+    packageName.set("com.github.kr328.gradle.i18n.benchmark")
+    isJvmEnabled.set(true)
+    isAndroidEnabled.set(false)
+    isComposeEnabled.set(false)
+    composeMode.set(ComposeMode.Remember)
+    jvmBackend.set(benchmarkJvmBackend)
+    jvmInstanceCacheSize.set(16)
+    androidBackend.set(AndroidBackend.Resources)
+    kotlinShardSize.set(benchmarkShardSize)
+    commonKotlinDirectory.set(layout.buildDirectory.dir("generated/i18n/commonKotlin"))
+    androidKotlinDirectory.set(layout.buildDirectory.dir("generated/i18n/androidKotlin"))
+    jvmKotlinDirectory.set(layout.buildDirectory.dir("generated/i18n/jvmKotlin"))
+}
+
+sourceSets {
+    main {
+        kotlin.srcDir(generateI18nKotlin.flatMap { it.commonKotlinDirectory })
+        kotlin.srcDir(generateI18nKotlin.flatMap { it.jvmKotlinDirectory })
+        resources.srcDir(generateI18nSources.flatMap { it.jvmResourceDirectory })
+    }
+}
+
+// Generated common and jvm sources are compiled together, expect and actual live in one module.
+tasks.withType<org.jetbrains.kotlin.gradle.tasks.KotlinCompile>().configureEach {
+    compilerOptions.freeCompilerArgs.add("-Xmulti-platform")
+}
+
+jmh {
+    jmhVersion.set("1.36")
+    includes.set(providers.gradleProperty("i18n.benchmark.include").map { listOf(it) }.orElse(listOf()))
+    fork.set(1)
+    warmupIterations.set(3)
+    warmup.set("2s")
+    iterations.set(5)
+    timeOnIteration.set("2s")
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+}
+
+// Build time harness, runs the generation tasks through TestKit over a matrix of synthetic catalogs.
+val scalability by sourceSets.creating
+
+dependencies {
+    "scalabilityImplementation"(gradleTestKit())
+}
+
+tasks.register<JavaExec>("scalabilityBenchmark") {
+    classpath = scalability.runtimeClasspath
+    mainClass.set("com.github.kr328.gradle.i18n.benchmark.ScalabilityBenchmarkKt")
+
+    val arguments = listOf("keys", "languages", "depth", "variables", "shardSize", "runs", "heap", "label")
+    args(arguments.mapNotNull { name ->
+        providers.gradleProperty("i18n.scalability.$name").orNull?.let { "$name=$it" }
+    })
+    args(
+        "plugin=${rootDir.parentFile.absolutePath}",
+        "work=${layout.buildDirectory.dir("scalability").get().asFile.absolutePath}",
+        "output=${layout.buildDirectory.file("reports/scalability/results.json").get().asFile.absolutePath}",
+    )
+}
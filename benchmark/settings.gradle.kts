@@ -0,0 +1,17 @@
+rootProject.name = "i18n-gradle-benchmark"
+
+pluginManagement {
+    includeBuild("..")
+
+    repositories {
+        gradlePluginPortal()
+        mavenCentral()
+        google()
+    }
+}
+
+dependencyResolutionManagement {
+    repositories {
+        mavenCentral()
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.kr328.gradle.i18n.benchmark
+
+import org.openjdk.jmh.annotations.*
+import java.util.*
+
+@State(Scope.Benchmark)
+open class AccessorBenchmark {
+    // "und" is root, languages translate plain_0 and format_0 and leave plain_1 and format_1 to the fallback.
+    @Param("und", "zh")
+    lateinit var languageTag: String
+
+    // Value classes can't be lateinit, the wrapper is rebuilt per call for free.
+    private lateinit var impl: I18nImpl
+
+    private val i18n: I18n
+        get() = I18n(impl)
+
+    @Setup
+    fun setup() {
+        impl = createI18n(Locale.forLanguageTag(languageTag)).IMPL
+    }
+
+    @Benchmark
+    fun plain(): String = i18n.plain_0()
+
+    @Benchmark
+    fun plainFallback(): String = i18n.plain_1()
+
+    @Benchmark
+    fun formatted(): String = i18n.format_0(42, "items", 0.5)
+
+    @Benchmark
+    fun formattedFallback(): String = i18n.format_1(42, "items", 0.5)
+}
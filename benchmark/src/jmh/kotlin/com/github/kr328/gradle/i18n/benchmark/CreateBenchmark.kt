@@ -0,0 +1,30 @@
+package com.github.kr328.gradle.i18n.benchmark
+
+import org.openjdk.jmh.annotations.*
+import java.util.*
+
+@State(Scope.Benchmark)
+open class CreateBenchmark {
+    @Param("und", "zh")
+    lateinit var languageTag: String
+
+    private lateinit var locale: Locale
+
+    @Setup
+    fun setup() {
+        locale = Locale.forLanguageTag(languageTag)
+    }
+
+    // Drops generated and ResourceBundle caches, so every call loads resources again.
+    // Results are unwrapped since functions returning value classes get mangled names.
+    @Benchmark
+    fun cold(): I18nImpl {
+        clearI18nCache()
+        ResourceBundle.clearCache(I18nImpl::class.java.classLoader)
+
+        return createI18n(locale).IMPL
+    }
+
+    @Benchmark
+    fun warm(): I18nImpl = createI18n(locale).IMPL
+}
@@ -0,0 +1,262 @@
+package com.github.kr328.gradle.i18n.benchmark
+
+import org.gradle.testkit.runner.GradleRunner
+import org.gradle.util.GradleVersion
+import java.io.File
+import java.time.Instant
+import java.util.*
+
+private const val KEYS_PER_FILE = 1000
+
+private val PHASES = listOf("generateI18nSources", "generateI18nKotlin")
+
+private val PHASE_OUTPUTS = mapOf(
+    "generateI18nSources" to listOf("generated/i18n/androidResource", "generated/i18n/jvmResource", "intermediates/i18n/schema.txt"),
+    "generateI18nKotlin" to listOf("generated/i18n/commonKotlin", "generated/i18n/androidKotlin", "generated/i18n/jvmKotlin"),
+)
+
+data class Case(val keys: Int, val languages: Int, val depth: Int, val variables: Int) {
+    val name: String
+        get() = "k${keys}_l${languages}_d${depth}_v${variables}"
+}
+
+// report is the task's own metrics JSON, breaking the wall time down into generation phases.
+data class Phase(val wallMillis: Long, val peakHeapBytes: Long, val bytesWritten: Long, val report: String)
+
+// Keys are spread over files of KEYS_PER_FILE, each file nests its keys under depth - 1 containers,
+// every other key carries the requested number of variables.
+private fun writeCatalog(directory: File, case: Case) {
+    fun variable(index: Int): String = when (index % 3) {
+        0 -> "{s$index: %s}"
+        1 -> "{d$index: %d}"
+        else -> "{f$index: %.2f}"
+    }
+
+    fun write(group: String, prefix: String) {
+        val root = directory.resolve(group).apply { mkdirs() }
+
+        for (file in 0 until (case.keys + KEYS_PER_FILE - 1) / KEYS_PER_FILE) {
+            root.resolve("part_$file.yaml").bufferedWriter().use { writer ->
+                writer.write("strings:\n")
+                writer.write("  part_$file:\n")
+
+                var indent = "    "
+                for (level in 1 until case.depth) {
+                    writer.write("${indent}level_$level:\n")
+                    indent += "  "
+                }
+
+                for (key in file * KEYS_PER_FILE until minOf(case.keys, (file + 1) * KEYS_PER_FILE)) {
+                    writer.write("${indent}key_$key: \"$prefix text $key")
+                    if (key % 2 == 1) {
+                        for (variable in 0 until case.variables) {
+                            writer.write(" ")
+                            writer.write(variable(variable))
+                        }
+                    }
+                    writer.write("\"\n")
+                }
+            }
+        }
+    }
+
+    write("root", "Root")
+    for (language in 0 until case.languages) {
+        write("l$language", "L$language")
+    }
+}
+
+private fun writeProject(directory: File, pluginDirectory: File, case: Case, shardSize: Int, heap: String) {
+    directory.resolve("settings.gradle.kts").writeText(
+        """
+        |pluginManagement {
+        |    includeBuild("${pluginDirectory.absolutePath.replace("\\", "/")}")
+        |
+        |    repositories {
+        |        gradlePluginPortal()
+        |        mavenCentral()
+        |        google()
+        |    }
+        |}
+        |
+        |rootProject.name = "${case.name}"
+        |""".trimMargin()
+    )
+
+    directory.resolve("gradle.properties").writeText("org.gradle.jvmargs=-Xmx$heap\n")
+
+    // Heap pools are reset when a task starts, the sum of their peaks bounds the heap used by that task.
+    directory.resolve("build.gradle.kts").writeText(
+        """
+        |import com.github.kr328.gradle.i18n.*
+        |import java.lang.management.ManagementFactory
+        |import java.lang.management.MemoryType
+        |
+        |plugins {
+        |    id("com.github.kr328.gradle.i18n") apply false
+        |}
+        |
+        |fun heapPools() = ManagementFactory.getMemoryPoolMXBeans().filter { it.type == MemoryType.HEAP }
+        |
+        |fun Task.measure() {
+        |    val metricsFile = layout.buildDirectory.file("scalability/${'$'}name.properties")
+        |    var start = 0L
+        |
+        |    doFirst {
+        |        System.gc()
+        |        heapPools().forEach { it.resetPeakUsage() }
+        |        start = System.nanoTime()
+        |    }
+        |    doLast {
+        |        val wallMillis = (System.nanoTime() - start) / 1_000_000
+        |        val peakHeapBytes = heapPools().sumOf { it.peakUsage.used }
+        |        metricsFile.get().asFile.apply { parentFile.mkdirs() }.writeText("wallMillis=${'$'}wallMillis\npeakHeapBytes=${'$'}peakHeapBytes\n")
+        |    }
+        |}
+        |
+        |val generateI18nSources = tasks.register<I18nTask>("generateI18nSources") {
+        |    i18nDirectory.set(file("i18n"))
+        |    packageName.set("com.github.kr328.gradle.i18n.scalability")
+        |    languages.addAll((0 until ${case.languages}).map { index ->
+        |        Language("l${'$'}index").apply { jvmLanguageTag = "l${'$'}index"; androidLanguageTag = "l${'$'}index" }
+        |    })
+        |    isJvmEnabled.set(true)
+        |    isAndroidEnabled.set(true)
+        |    jvmBackend.set(JvmBackend.ResourceBundle)
+        |    isSparseResourcesEnabled.set(false)
+        |    androidResourceDirectory.set(layout.buildDirectory.dir("generated/i18n/androidResource"))
+        |    jvmResourceDirectory.set(layout.buildDirectory.dir("generated/i18n/jvmResource"))
+        |    schemaFile.set(layout.buildDirectory.file("intermediates/i18n/schema.txt"))
+        |    fallbackReportFile.set(layout.buildDirectory.file("reports/i18n/fallback.txt"))
+        |    metricsReportFile.set(layout.buildDirectory.file("reports/i18n/generateI18nSources.json"))
+        |    stateDirectory.set(layout.buildDirectory.dir("intermediates/i18n/state"))
+        |    cacheDirectory.set(layout.buildDirectory.dir("intermediates/i18n/cache"))
+        |    parseParallelism.set(gradle.startParameter.maxWorkerCount)
+        |    measure()
+        |}
+        |
+        |tasks.register<I18nKotlinTask>("generateI18nKotlin") {
+        |    schemaFile.set(generateI18nSources.flatMap { it.schemaFile })
+        |    packageName.set("com.github.kr328.gradle.i18n.scalability")
+        |    isJvmEnabled.set(true)
+        |    isAndroidEnabled.set(true)
+        |    isComposeEnabled.set(false)
+        |    composeMode.set(ComposeMode.Remember)
+        |    jvmBackend.set(JvmBackend.ResourceBundle)
+        |    jvmInstanceCacheSize.set(16)
+        |    androidBackend.set(AndroidBackend.Resources)
+        |    kotlinShardSize.set($shardSize)
+        |    commonKotlinDirectory.set(layout.buildDirectory.dir("generated/i18n/commonKotlin"))
+        |    androidKotlinDirectory.set(layout.buildDirectory.dir("generated/i18n/androidKotlin"))
+        |    jvmKotlinDirectory.set(layout.buildDirectory.dir("generated/i18n/jvmKotlin"))
+        |    metricsReportFile.set(layout.buildDirectory.file("reports/i18n/generateI18nKotlin.json"))
+        |    measure()
+        |}
+        |""".trimMargin()
+    )
+
+    writeCatalog(directory.resolve("i18n"), case)
+}
+
+private fun sizeOf(file: File): Long = file.walkTopDown().filter { it.isFile }.sumOf { it.length() }
+
+private fun run(directory: File): Map<String, Phase> {
+    val build = directory.resolve("build")
+    build.deleteRecursively()
+
+    GradleRunner.create()
+        .withProjectDir(directory)
+        .withArguments(PHASES + "--stacktrace")
+        .build()
+
+    return PHASES.associateWith { phase ->
+        val metrics = Properties().apply {
+            build.resolve("scalability/$phase.properties").reader().use { load(it) }
+        }
+
+        val report = build.resolve("reports/i18n/$phase.json")
+        check(report.isFile) { "Metrics report of $phase not found: $report" }
+
+        Phase(
+            wallMillis = metrics.getProperty("wallMillis").toLong(),
+            peakHeapBytes = metrics.getProperty("peakHeapBytes").toLong(),
+            bytesWritten = PHASE_OUTPUTS.getValue(phase).sumOf { sizeOf(build.resolve(it)) },
+            report = report.readText().trim(),
+        )
+    }
+}
+
+private fun String.json(): String = "\"" + replace("\\", "\\\\").replace("\"", "\\\"") + "\""
+
+private fun Map<String, String>.argument(name: String, default: String): String = get(name) ?: default
+
+private fun Map<String, String>.integers(name: String, default: String): List<Int> = argument(name, default).split(",").map(String::toInt)
+
+// Arguments are name=value pairs, list values are comma separated, every combination of the lists is one case.
+fun main(args: Array<String>) {
+    val arguments = args.associate { it.substringBefore("=") to it.substringAfter("=") }
+
+    val pluginDirectory = File(arguments.argument("plugin", "..")).absoluteFile.normalize()
+    val workDirectory = File(arguments.argument("work", "build/scalability")).absoluteFile
+    val output = File(arguments.argument("output", "build/reports/scalability/results.json")).absoluteFile
+    val runs = arguments.argument("runs", "3").toInt()
+    val heap = arguments.argument("heap", "4g")
+    val shardSize = arguments.argument("shardSize", "0").toInt()
+
+    val cases = arguments.integers("keys", "1000,10000,100000").flatMap { keys ->
+        arguments.integers("languages", "1,10").flatMap { languages ->
+            arguments.integers("depth", "3").flatMap { depth ->
+                arguments.integers("variables", "2").map { variables -> Case(keys, languages, depth, variables) }
+            }
+        }
+    }
+
+    val results = StringBuilder()
+    results.append("{\n")
+    results.append("  \"label\": ${arguments.argument("label", "").json()},\n")
+    results.append("  \"timestamp\": ${Instant.now().toString().json()},\n")
+    results.append("  \"gradleVersion\": ${GradleVersion.current().version.json()},\n")
+    results.append("  \"javaVersion\": ${System.getProperty("java.version").json()},\n")
+    results.append("  \"shardSize\": $shardSize,\n")
+    results.append("  \"cases\": [")
+
+    cases.forEachIndexed { caseIndex, case ->
+        val directory = workDirectory.resolve(case.name)
+        directory.deleteRecursively()
+        directory.mkdirs()
+
+        writeProject(directory, pluginDirectory, case, shardSize, heap)
+
+        results.append(if (caseIndex == 0) "\n" else ",\n")
+        results.append("    {\n")
+        results.append("      \"keys\": ${case.keys}, \"languages\": ${case.languages}, \"depth\": ${case.depth}, \"variables\": ${case.variables},\n")
+        results.append("      \"catalogBytes\": ${sizeOf(directory.resolve("i18n"))},\n")
+        results.append("      \"runs\": [")
+
+        for (run in 0 until runs) {
+            val phases = run(directory)
+
+            println("${case.name} run $run: " + phases.entries.joinToString { (name, phase) ->
+                "$name ${phase.wallMillis} ms, ${phase.peakHeapBytes / 1024 / 1024} MiB heap, ${phase.bytesWritten} bytes"
+            })
+
+            results.append(if (run == 0) "\n" else ",\n")
+            results.append("        {")
+            results.append(phases.entries.joinToString(", ") { (name, phase) ->
+                "${name.json()}: {\"wallMillis\": ${phase.wallMillis}, \"peakHeapBytes\": ${phase.peakHeapBytes}, \"bytesWritten\": ${phase.bytesWritten}, \"report\": ${phase.report}}"
+            })
+            results.append("}")
+        }
+
+        results.append("\n      ]\n")
+        results.append("    }")
+    }
+
+    results.append("\n  ]\n")
+    results.append("}\n")
+
+    output.parentFile.mkdirs()
+    output.writeText(results.toString())
+
+    println("Results written to $output")
+}
@@ -16,6 +16,11 @@ dependencies {
 
     implementation("com.squareup:kotlinpoet:1.13.2")
     implementation("org.yaml:snakeyaml:2.0")
+
+    testImplementation(platform("org.junit:junit-bom:5.10.2"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testImplementation(gradleTestKit())
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
 java {
@@ -25,6 +30,16 @@ java {
     withSourcesJar()
 }
 
+tasks.test {
+    useJUnitPlatform()
+}
+
+tasks.jar {
+    manifest {
+        attributes("Implementation-Version" to project.version.toString())
+    }
+}
+
 gradlePlugin {
     plugins {
         create("i18n") {
@@ -0,0 +1,5 @@
+package com.github.kr328.gradle.i18n;
+
+public enum AndroidBackend {
+    Resources, CachedResources
+}
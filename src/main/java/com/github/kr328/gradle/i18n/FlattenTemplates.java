@@ -2,15 +2,124 @@ package com.github.kr328.gradle.i18n;
 
 import lombok.Data;
 
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Data
-public final class FlattenTemplates {
+public final class FlattenTemplates implements Serializable {
     private final Map<Key, Template> templates;
 
-    @Data
-    public static class Key {
-        private final List<String> names;
+    // Trie node of key path, prefixes are shared with the parent.
+    public static final class Key implements Serializable {
+        @Nullable
+        private final Key parent;
+        private final String name;
+        private final int depth;
+        private final int hash;
+
+        private Key(@Nullable final Key parent, final String name) {
+            this.parent = parent;
+            this.name = name;
+            this.depth = parent == null ? 1 : parent.depth + 1;
+            this.hash = (parent == null ? 0 : parent.hash * 31) + name.hashCode();
+        }
+
+        @Nullable
+        public Key getParent() {
+            return parent;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public List<String> getNames() {
+            final String[] names = new String[depth];
+
+            Key current = this;
+            for (int i = depth - 1; i >= 0; i--) {
+                names[i] = current.name;
+                current = current.parent;
+            }
+
+            return Arrays.asList(names);
+        }
+
+        public String join(final String separator) {
+            return String.join(separator, getNames());
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key a = this;
+            Key b = (Key) o;
+            if (a.hash != b.hash || a.depth != b.depth) {
+                return false;
+            }
+
+            // Keys of one interner share their prefixes, the walk stops at the first common node.
+            while (a != b) {
+                if (!a.name.equals(b.name)) {
+                    return false;
+                }
+
+                a = a.parent;
+                b = b.parent;
+            }
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return join(".");
+        }
+    }
+
+    // Canonical keys of one parse run, so files of every language share key nodes and segments.
+    public static final class Interner {
+        private final Map<String, String> names = new ConcurrentHashMap<>();
+        private final Map<Key, Key> keys = new ConcurrentHashMap<>();
+
+        public Key child(@Nullable final Key parent, final String name) {
+            final Key key = new Key(parent, names.computeIfAbsent(name, (_k) -> name));
+            final Key existing = keys.putIfAbsent(key, key);
+
+            return existing != null ? existing : key;
+        }
+
+        public Key of(final List<String> names) {
+            Key key = null;
+            for (final String name : names) {
+                key = child(key, name);
+            }
+
+            if (key == null) {
+                throw new IllegalArgumentException("Empty key");
+            }
+
+            return key;
+        }
     }
 }
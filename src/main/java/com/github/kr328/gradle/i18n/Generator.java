@@ -1,351 +1,23 @@
 package com.github.kr328.gradle.i18n;
 
-import com.squareup.kotlinpoet.*;
 import lombok.AllArgsConstructor;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.function.BiFunction;
-import java.util.stream.Collectors;
 
 @AllArgsConstructor
 public class Generator {
-    private static final AnnotationSpec KOTLIN_FILE_ANNOTATION = AnnotationSpec.builder(Symbols.SUPPRESS)
-            .addMember("%S, %S, %S, %S, %S", "RedundantVisibilityModifier", "FunctionName", "PropertyName", "RemoveExplicitTypeArguments", "MemberVisibilityCanBePrivate")
-            .build();
+    static final int JVM_STRING_TABLE_MAGIC = 0x49313854; // I18T
+    static final int JVM_STRING_TABLE_VERSION = 2;
+    static final int JVM_STRING_TABLE_HEADER_SIZE = 16;
+
     private final FlattenTemplates root;
     private final String packageName;
 
-    private List<ParameterSpec> buildVariableParameters(final FlattenTemplates.Key key) {
-        final Template template = Objects.requireNonNull(root.getTemplates().get(key));
-
-        return template.getVariables().stream()
-                .map(v -> ParameterSpec.builder(v.getName(), v.getType().kotlinType()).build())
-                .collect(Collectors.toList());
-    }
-
-    private CodeBlock buildFormatParameters(final FlattenTemplates.Key key) {
-        final Template template = Objects.requireNonNull(root.getTemplates().get(key));
-        final List<String> variables = template.getVariables()
-                .stream().map(Template.Part.Variable::getName)
-                .collect(Collectors.toList());
-        final String format = String.join(",", Collections.nCopies(variables.size(), "%N"));
-
-        return CodeBlock.of(format, variables.toArray(Object[]::new));
-    }
-
-    public void generateCommonExpectKotlin(final Path path) throws IOException {
-        final TypeSpec.Builder implClass = TypeSpec.expectClassBuilder(Naming.I18N_IMPL_CLASS_NAME);
-
-        for (final FlattenTemplates.Key key : root.getTemplates().keySet()) {
-            if (buildFormatParameters(key).isNotEmpty()) {
-                final TypeVariableName returnType = TypeVariableName.get("T");
-
-                implClass.addFunction(
-                        FunSpec.builder(Naming.implFunctionName(key))
-                                .addTypeVariable(returnType)
-                                .addParameter("F", Naming.formatterName(packageName, returnType))
-                                .addParameters(buildVariableParameters(key))
-                                .returns(returnType)
-                                .build()
-                );
-            } else {
-                implClass.addFunction(
-                        FunSpec.builder(Naming.implFunctionName(key))
-                                .returns(TypeNames.STRING)
-                                .build()
-                );
-            }
-        }
-
-        FileSpec.builder(packageName, Naming.I18N_IMPL_CLASS_NAME)
-                .addAnnotation(KOTLIN_FILE_ANNOTATION)
-                .addType(implClass.build())
-                .build()
-                .writeTo(path);
-    }
-
-    public void generateCommonKotlin(final Path path, final boolean composable) throws ProcessorException, IOException {
-        final ClassName implClassName = new ClassName(packageName, Naming.I18N_IMPL_CLASS_NAME);
-
-        final BiFunction<ClassName, TreeTemplates.Child.Container, TypeSpec> generateType = new BiFunction<>() {
-            @Override
-            public TypeSpec apply(final ClassName className, final TreeTemplates.Child.Container root) {
-                final TypeSpec.Builder rootType = TypeSpec.valueClassBuilder(className.getSimpleName())
-                        .addAnnotation(Symbols.JVM_INLINE)
-                        .addProperty(
-                                PropertySpec.builder("IMPL", implClassName)
-                                        .initializer("IMPL")
-                                        .build()
-                        )
-                        .primaryConstructor(
-                                FunSpec.constructorBuilder()
-                                        .addParameter("IMPL", implClassName)
-                                        .build()
-                        );
-
-                for (final Map.Entry<String, TreeTemplates.Child> entry : root.getChildren().entrySet()) {
-                    if (entry.getValue() instanceof TreeTemplates.Child.Value) {
-                        final TreeTemplates.Child.Value value = (TreeTemplates.Child.Value) entry.getValue();
-
-                        final CodeBlock formatParameters = buildFormatParameters(value.getKey());
-                        if (formatParameters.isNotEmpty()) {
-                            final FunSpec.Builder withFormatter = FunSpec.builder(entry.getKey());
-                            final FunSpec.Builder withoutFormatter = FunSpec.builder(entry.getKey());
-
-                            final TypeVariableName returnType = TypeVariableName.get("T");
-                            final List<ParameterSpec> parameters = buildVariableParameters(value.getKey());
-
-                            withFormatter.addTypeVariable(returnType)
-                                    .addParameter("F", Naming.formatterName(packageName, returnType))
-                                    .addParameters(parameters)
-                                    .returns(returnType);
-                            withoutFormatter
-                                    .addParameters(parameters)
-                                    .returns(TypeNames.STRING)
-                                    .addCode("return %N(DefaultFormatter, %L)", entry.getKey(), formatParameters);
-
-                            if (composable) {
-                                withFormatter.addAnnotation(Symbols.COMPOSABLE);
-                                withoutFormatter.addAnnotation(Symbols.COMPOSABLE);
-
-                                withFormatter.addCode(
-                                        "return %M(IMPL, F, %L) { IMPL.%N(F, %L) }",
-                                        Symbols.REMEMBER,
-                                        formatParameters,
-                                        Naming.implFunctionName(value.getKey()),
-                                        formatParameters
-                                );
-                            } else {
-                                withFormatter.addCode(
-                                        "return IMPL.%N(F, %L)",
-                                        Naming.implFunctionName(value.getKey()),
-                                        formatParameters
-                                );
-                            }
-
-                            rootType.addFunction(withFormatter.build());
-                            rootType.addFunction(withoutFormatter.build());
-                        } else {
-                            final FunSpec.Builder fun = FunSpec.builder(entry.getKey())
-                                    .returns(TypeNames.STRING);
-
-                            if (composable) {
-                                fun.addAnnotation(Symbols.COMPOSABLE);
-
-                                fun.addCode(
-                                        "return %M(IMPL) { IMPL.%N() }",
-                                        Symbols.REMEMBER,
-                                        Naming.implFunctionName(value.getKey())
-                                );
-                            } else {
-                                fun.addCode(
-                                        "return IMPL.%N()",
-                                        Naming.implFunctionName(value.getKey())
-                                );
-                            }
-
-                            rootType.addFunction(fun.build());
-                        }
-                    } else if (entry.getValue() instanceof TreeTemplates.Child.Container) {
-                        final TreeTemplates.Child.Container container = (TreeTemplates.Child.Container) entry.getValue();
-                        final ClassName childClassName = className.nestedClass(NameUtils.snakeToCamel(entry.getKey()));
-                        final TypeSpec childType = apply(childClassName, container);
-
-                        rootType.addType(childType).addProperty(
-                                PropertySpec.builder(entry.getKey(), childClassName)
-                                        .getter(FunSpec.getterBuilder().addCode("return %T(IMPL)", childClassName).build())
-                                        .build()
-                        );
-                    }
-                }
-
-                return rootType.build();
-            }
-        };
-
-        final String className;
-        if (composable) {
-            className = Naming.I18N_COMPOSABLE_CLASS_NAME;
-        } else {
-            className = Naming.I18N_CLASS_NAME;
-        }
-
-        FileSpec.builder(packageName, className)
-                .addAnnotation(KOTLIN_FILE_ANNOTATION)
-                .addType(generateType.apply(new ClassName(packageName, className), TreeTemplates.createFrom(root).getRoot()))
-                .build()
-                .writeTo(path);
-    }
-
-    public void generateJvmKotlin(final Path path) throws IOException {
-        final TypeSpec.Builder implClass = TypeSpec.classBuilder(Naming.I18N_IMPL_CLASS_NAME)
-                .addModifiers(KModifier.ACTUAL)
-                .addProperty(
-                        PropertySpec.builder("RES", Symbols.RESOURCE_BUNDLE)
-                                .initializer("RES")
-                                .build()
-                )
-                .primaryConstructor(
-                        FunSpec.constructorBuilder()
-                                .addParameter("RES", Symbols.RESOURCE_BUNDLE)
-                                .build()
-                );
-
-        for (final FlattenTemplates.Key key : root.getTemplates().keySet()) {
-            final CodeBlock formatParameters = buildFormatParameters(key);
-
-            final FunSpec.Builder fun = FunSpec.builder(Naming.implFunctionName(key))
-                    .addModifiers(KModifier.ACTUAL);
-
-            if (formatParameters.isNotEmpty()) {
-                final TypeVariableName returnType = TypeVariableName.get("T");
-
-                fun.addTypeVariable(returnType)
-                        .addParameter("F", Naming.formatterName(packageName, returnType))
-                        .addParameters(buildVariableParameters(key))
-                        .returns(returnType)
-                        .addCode(
-                                "return F.format(RES.locale, RES.getString(%S), %L)",
-                                Naming.jvmResourceKey(key),
-                                formatParameters
-                        );
-            } else {
-                fun.returns(TypeNames.STRING)
-                        .addCode("return RES.getString(%S)", Naming.jvmResourceKey(key));
-            }
-
-            implClass.addFunction(fun.build());
-        }
-
-        final ClassName i18nClassName = new ClassName(packageName, Naming.I18N_CLASS_NAME);
-        final ClassName i18nComposableName = new ClassName(packageName, Naming.I18N_COMPOSABLE_CLASS_NAME);
-        final ClassName i18nImplClassName = new ClassName(packageName, Naming.I18N_IMPL_CLASS_NAME);
-        final FunSpec createI18nFunc = FunSpec.builder("createI18n")
-                .addParameter(
-                        ParameterSpec.builder("locale", Symbols.LOCALE)
-                                .defaultValue("%T.getDefault()", Symbols.LOCALE)
-                                .build()
-                )
-                .returns(i18nClassName)
-                .addCode(
-                        "return %T(%T(%T.getBundle(%S, locale)))",
-                        i18nClassName,
-                        i18nImplClassName,
-                        Symbols.RESOURCE_BUNDLE,
-                        String.join(".", packageName, Naming.JVM_RESOURCE_BUNDLE_NAME)
-                )
-                .build();
-        final FunSpec createI18nComposableFunc = FunSpec.builder("createI18nComposable")
-                .addParameter(
-                        ParameterSpec.builder("locale", Symbols.LOCALE)
-                                .defaultValue("%T.getDefault()", Symbols.LOCALE)
-                                .build()
-                )
-                .returns(i18nComposableName)
-                .addCode(
-                        "return %T(%T(%T.getBundle(%S, locale)))",
-                        i18nComposableName,
-                        i18nImplClassName,
-                        Symbols.RESOURCE_BUNDLE,
-                        String.join(".", packageName, Naming.JVM_RESOURCE_BUNDLE_NAME)
-                )
-                .build();
-
-        FileSpec.builder(packageName, Naming.I18N_IMPL_CLASS_NAME)
-                .addAnnotation(KOTLIN_FILE_ANNOTATION)
-                .addType(implClass.build())
-                .addFunction(createI18nFunc)
-                .addFunction(createI18nComposableFunc)
-                .build()
-                .writeTo(path);
-    }
-
-    public void generateAndroidKotlin(final Path path) throws IOException {
-        final TypeSpec.Builder implClass = TypeSpec.classBuilder(Naming.I18N_IMPL_CLASS_NAME)
-                .addModifiers(KModifier.ACTUAL)
-                .addProperty(
-                        PropertySpec.builder("RES", Symbols.RESOURCES)
-                                .initializer("RES")
-                                .build()
-                )
-                .primaryConstructor(
-                        FunSpec.constructorBuilder()
-                                .addParameter("RES", Symbols.RESOURCES)
-                                .build()
-                );
-
-        for (final FlattenTemplates.Key key : root.getTemplates().keySet()) {
-            final CodeBlock formatParameters = buildFormatParameters(key);
-
-            final FunSpec.Builder fun = FunSpec.builder(Naming.implFunctionName(key))
-                    .addModifiers(KModifier.ACTUAL);
-
-            if (formatParameters.isNotEmpty()) {
-                final TypeVariableName returnType = TypeVariableName.get("T");
-
-                fun.addTypeVariable(returnType)
-                        .addParameter("F", Naming.formatterName(packageName, returnType))
-                        .returns(returnType)
-                        .addParameters(buildVariableParameters(key))
-                        .addCode(
-                                "return F.format(RES.configuration.locales[0], RES.getString(R.string.%N), %L)",
-                                Naming.androidResourceKey(key),
-                                formatParameters
-                        );
-            } else {
-                fun.returns(TypeNames.STRING)
-                        .addCode("return RES.getString(R.string.%N)", Naming.androidResourceKey(key));
-            }
-
-            implClass.addFunction(fun.build());
-        }
-
-        final ClassName i18nClassName = new ClassName(packageName, Naming.I18N_CLASS_NAME);
-        final ClassName i18nComposableName = new ClassName(packageName, Naming.I18N_COMPOSABLE_CLASS_NAME);
-        final ClassName i18nImplClassName = new ClassName(packageName, Naming.I18N_IMPL_CLASS_NAME);
-        final FunSpec createI18nFunc = FunSpec.builder("createI18n")
-                .addParameter("resources", Symbols.RESOURCES)
-                .returns(i18nClassName)
-                .addCode(
-                        "return %T(%T(resources))",
-                        i18nClassName,
-                        i18nImplClassName
-                )
-                .build();
-        final FunSpec createI18nComposableFunc = FunSpec.builder("createI18nComposable")
-                .addParameter("resources", Symbols.RESOURCES)
-                .returns(i18nComposableName)
-                .addCode(
-                        "return %T(%T(resources))",
-                        i18nComposableName,
-                        i18nImplClassName
-                )
-                .build();
-
-        FileSpec.builder(packageName, Naming.I18N_IMPL_CLASS_NAME)
-                .addAnnotation(KOTLIN_FILE_ANNOTATION)
-                .addType(implClass.build())
-                .addFunction(createI18nFunc)
-                .addFunction(createI18nComposableFunc)
-                .build()
-                .writeTo(path);
-    }
-
-    private String createFormatTextFromTemplate(final FlattenTemplates.Key key, final Template template) throws ProcessorException {
+    String createFormatTextFromTemplate(final FlattenTemplates.Key key, final Template template) throws ProcessorException {
         final StringBuilder builder = new StringBuilder();
         for (final Template.Part part : template.getParts()) {
             if (part instanceof Template.Part.Literal) {
@@ -363,97 +35,124 @@ public class Generator {
         return builder.toString();
     }
 
-    public void generateJvmResource(final Path path, final String languageTag, final FlattenTemplates languageTemplates) throws ProcessorException, IOException {
-        final Properties properties = new Properties();
+    // Sparse files only contain keys the language declares, missing ones are resolved by the platform fallback.
+    private static Template resourceTemplate(final Map.Entry<FlattenTemplates.Key, Template> rootEntry, final FlattenTemplates languageTemplates, final boolean isSparse) {
+        final Template template = languageTemplates.getTemplates().get(rootEntry.getKey());
+        if (template != null || isSparse) {
+            return template;
+        }
+        return rootEntry.getValue();
+    }
 
+    private boolean hasResourceTemplates(final FlattenTemplates languageTemplates, final boolean isSparse) {
+        if (!isSparse) {
+            return !root.getTemplates().isEmpty();
+        }
         for (final FlattenTemplates.Key key : root.getTemplates().keySet()) {
-            final Template template = Optional.ofNullable(languageTemplates.getTemplates().get(key))
-                    .orElseGet(() -> root.getTemplates().get(key));
-
-            properties.setProperty(Naming.jvmResourceKey(key), createFormatTextFromTemplate(key, template));
+            if (languageTemplates.getTemplates().containsKey(key)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        final Path propertiesPath;
-        if (languageTag == null) {
-            propertiesPath = path.resolve(packageName.replace('.', '/')).resolve(Naming.JVM_RESOURCE_BUNDLE_NAME + ".properties");
-        } else {
-            propertiesPath = path.resolve(packageName.replace('.', '/')).resolve(Naming.JVM_RESOURCE_BUNDLE_NAME + "_" + languageTag + ".properties");
-        }
+    public void generateJvmResource(final OutputSink sink, final String languageTag, final FlattenTemplates languageTemplates, final boolean isSparse) throws ProcessorException, IOException {
+        try (final OutputSink.StagedWriter writer = sink.openWriter(Naming.jvmResourceFile(packageName, languageTag), StandardCharsets.ISO_8859_1)) {
+            for (final Map.Entry<FlattenTemplates.Key, Template> entry : root.getTemplates().entrySet()) {
+                final FlattenTemplates.Key key = entry.getKey();
+                final Template template = resourceTemplate(entry, languageTemplates, isSparse);
+                if (template == null) {
+                    continue;
+                }
 
-        Files.createDirectories(propertiesPath.getParent());
+                PropertiesUtils.writeEntry(writer, Naming.jvmResourceKey(key), createFormatTextFromTemplate(key, template));
+            }
 
-        try (final OutputStream stream = Files.newOutputStream(propertiesPath)) {
-            properties.store(stream, null);
+            writer.commit();
         }
     }
 
-    public void generateAndroidResource(final Path path, final String languageTag, final FlattenTemplates languageTemplates) throws ProcessorException, ParserConfigurationException, TransformerException, IOException {
-        final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-        final Element resources = document.createElement("resources");
+    // Header, pool index of every key by root declared ordinal, end offsets of pooled strings, then UTF-8 data, all big endian.
+    public long generateJvmStringTable(final OutputSink sink, final String languageTag, final FlattenTemplates languageTemplates) throws ProcessorException, IOException {
+        final StringPool pool = new StringPool();
+        final int[] refs = new int[root.getTemplates().size()];
 
+        int index = 0;
         for (final FlattenTemplates.Key key : root.getTemplates().keySet()) {
             final Template template = Optional.ofNullable(languageTemplates.getTemplates().get(key))
                     .orElseGet(() -> root.getTemplates().get(key));
 
-            final Element string = document.createElement("string");
-            string.setTextContent(createFormatTextFromTemplate(key, template).replace("\n", "\\n"));
-            string.setAttribute("name", Naming.androidResourceKey(key));
-            resources.appendChild(string);
+            refs[index++] = pool.intern(createFormatTextFromTemplate(key, template));
         }
 
-        document.appendChild(resources);
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        final int[] offsets = new int[pool.getStrings().size() + 1];
+        for (int i = 0; i < pool.getStrings().size(); i++) {
+            data.write(pool.getStrings().get(i).getBytes(StandardCharsets.UTF_8));
+            offsets[i + 1] = data.size();
+        }
 
-        final Path xmlPath;
-        if (languageTag == null) {
-            xmlPath = path.resolve("values").resolve("strings.xml");
-        } else {
-            xmlPath = path.resolve("values-" + languageTag).resolve("strings.xml");
+        final ByteArrayOutputStream table = new ByteArrayOutputStream(JVM_STRING_TABLE_HEADER_SIZE + (refs.length + offsets.length) * 4 + data.size());
+        try (final DataOutputStream output = new DataOutputStream(table)) {
+            output.writeInt(JVM_STRING_TABLE_MAGIC);
+            output.writeInt(JVM_STRING_TABLE_VERSION);
+            output.writeInt(refs.length);
+            output.writeInt(pool.getStrings().size());
+            for (final int ref : refs) {
+                output.writeInt(ref);
+            }
+            for (final int offset : offsets) {
+                output.writeInt(offset);
+            }
+            data.writeTo(output);
         }
 
-        Files.createDirectories(xmlPath.getParent());
+        sink.write(Naming.jvmStringTableFile(packageName, languageTag), table.toByteArray());
 
-        try (final OutputStream stream = Files.newOutputStream(xmlPath)) {
-            final Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
-            transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-            transformer.transform(new DOMSource(document), new StreamResult(stream));
-        }
+        return pool.getSavedBytes();
     }
 
-    public void generateDefaultFormatter(final Path path) throws IOException {
-        final TypeVariableName returnType = TypeVariableName.get("T");
+    // Written in the layout the DOM serializer used to produce: declaration, four space indent, empty strings self-closed.
+    public void generateAndroidResource(final OutputSink sink, final String languageTag, final FlattenTemplates languageTemplates, final boolean isSparse) throws ProcessorException, IOException {
+        try (final OutputSink.StagedWriter writer = sink.openWriter(Naming.androidResourceFile(languageTag), StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+            writer.write("<resources");
 
-        final TypeSpec formatter = TypeSpec.funInterfaceBuilder("Formatter")
-                .addTypeVariable(returnType)
-                .addFunction(
-                        FunSpec.builder("format")
-                                .addModifiers(KModifier.ABSTRACT)
-                                .addParameter("locale", Symbols.LOCALE)
-                                .addParameter("format", TypeNames.STRING)
-                                .addParameter(
-                                        ParameterSpec.builder("args", TypeNames.ANY.copy(true, List.of()))
-                                                .addModifiers(KModifier.VARARG)
-                                                .build()
-                                )
-                                .returns(returnType)
-                                .build()
-                ).build();
+            // Untranslated keys are expected with sparse languages, keep lint from reporting them.
+            if (isSparse && languageTag == null) {
+                writer.write(" xmlns:tools=\"http://schemas.android.com/tools\" tools:ignore=\"MissingTranslation\"");
+            }
+
+            if (!hasResourceTemplates(languageTemplates, isSparse)) {
+                writer.write("/>\n");
+                writer.commit();
+                return;
+            }
+
+            writer.write(">\n");
+
+            for (final Map.Entry<FlattenTemplates.Key, Template> entry : root.getTemplates().entrySet()) {
+                final FlattenTemplates.Key key = entry.getKey();
+                final Template template = resourceTemplate(entry, languageTemplates, isSparse);
+                if (template == null) {
+                    continue;
+                }
 
-        final PropertySpec defaultFormatter = PropertySpec.builder(
-                "DefaultFormatter",
-                Naming.formatterName(packageName, TypeNames.STRING)
-        ).initializer(
-                "%T { locale, format, args -> String.format(locale, format, *args) }",
-                Naming.formatterName(packageName, TypeNames.STRING)
-        ).build();
+                final String text = createFormatTextFromTemplate(key, template).replace("\n", "\\n");
 
-        FileSpec.builder(packageName, "Formatter")
-                .addAnnotation(KOTLIN_FILE_ANNOTATION)
-                .addType(formatter)
-                .addProperty(defaultFormatter)
-                .build()
-                .writeTo(path);
+                writer.write("    <string name=\"");
+                writer.write(Naming.androidResourceKey(key));
+                if (text.isEmpty()) {
+                    writer.write("\"/>\n");
+                } else {
+                    writer.write("\">");
+                    XmlUtils.escapeText(writer, text);
+                    writer.write("</string>\n");
+                }
+            }
+
+            writer.write("</resources>\n");
+            writer.commit();
+        }
     }
 }
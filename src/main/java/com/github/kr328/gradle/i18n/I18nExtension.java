@@ -17,6 +17,27 @@ public abstract class I18nExtension {
     @Nonnull
     public abstract Property<Boolean> getIsComposeEnabled();
 
+    @Nonnull
+    public abstract Property<ComposeMode> getComposeMode();
+
+    @Nonnull
+    public abstract Property<JvmBackend> getJvmBackend();
+
+    @Nonnull
+    public abstract Property<Boolean> getIsPrecompiledFormatEnabled();
+
+    @Nonnull
+    public abstract Property<Integer> getJvmInstanceCacheSize();
+
+    @Nonnull
+    public abstract Property<AndroidBackend> getAndroidBackend();
+
+    @Nonnull
+    public abstract Property<Boolean> getIsSparseResourcesEnabled();
+
+    @Nonnull
+    public abstract Property<Integer> getKotlinShardSize();
+
     @Nonnull
     public abstract NamedDomainObjectContainer<Language> getLanguages();
 
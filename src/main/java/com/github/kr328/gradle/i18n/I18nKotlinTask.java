@@ -0,0 +1,157 @@
+package com.github.kr328.gradle.i18n;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+@CacheableTask
+public abstract class I18nKotlinTask extends DefaultTask {
+    @Input
+    public abstract Property<Boolean> getIsJvmEnabled();
+
+    @Input
+    public abstract Property<Boolean> getIsAndroidEnabled();
+
+    @Input
+    public abstract Property<Boolean> getIsComposeEnabled();
+
+    @Input
+    public abstract Property<ComposeMode> getComposeMode();
+
+    @Input
+    public abstract Property<JvmBackend> getJvmBackend();
+
+    @Input
+    public abstract Property<Integer> getJvmInstanceCacheSize();
+
+    @Input
+    public abstract Property<AndroidBackend> getAndroidBackend();
+
+    @Input
+    public abstract Property<Integer> getKotlinShardSize();
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getSchemaFile();
+
+    @Optional
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getJvmTemplatesFile();
+
+    @Input
+    public abstract Property<String> getPackageName();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getCommonKotlinDirectory();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getAndroidKotlinDirectory();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getJvmKotlinDirectory();
+
+    // Timings differ on every run, so the report is not tracked as an output.
+    @Internal
+    public abstract RegularFileProperty getMetricsReportFile();
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    private Path durationFile(final KotlinWorkAction.Target target) {
+        return getTemporaryDir().toPath().resolve(target + ".duration");
+    }
+
+    private void submit(final WorkQueue queue, final KotlinWorkAction.Target target, final DirectoryProperty outputDirectory) {
+        queue.submit(KotlinWorkAction.class, parameters -> {
+            parameters.getTarget().set(target);
+            parameters.getPackageName().set(getPackageName());
+            parameters.getIsComposeEnabled().set(getIsComposeEnabled());
+            parameters.getComposeMode().set(getComposeMode());
+            parameters.getJvmBackend().set(getJvmBackend());
+            parameters.getJvmInstanceCacheSize().set(getJvmInstanceCacheSize());
+            parameters.getAndroidBackend().set(getAndroidBackend());
+            parameters.getKotlinShardSize().set(getKotlinShardSize());
+            parameters.getSchemaFile().set(getSchemaFile());
+            parameters.getJvmTemplatesFile().set(getJvmTemplatesFile());
+            parameters.getOutputDirectory().set(outputDirectory);
+            parameters.getDurationFile().set(durationFile(target).toFile());
+        });
+    }
+
+    @TaskAction
+    public void doAction() throws Exception {
+        final Metrics metrics = new Metrics(getPath());
+        final long start = System.nanoTime();
+        final WorkQueue queue = getWorkerExecutor().noIsolation();
+        final Map<KotlinWorkAction.Target, DirectoryProperty> submitted = new EnumMap<>(KotlinWorkAction.Target.class);
+
+        submitted.put(KotlinWorkAction.Target.Common, getCommonKotlinDirectory());
+
+        if (getIsJvmEnabled().getOrElse(false)) {
+            submitted.put(KotlinWorkAction.Target.Jvm, getJvmKotlinDirectory());
+        } else {
+            new OutputSink(getJvmKotlinDirectory().get().getAsFile().toPath()).sweep();
+        }
+
+        if (getIsAndroidEnabled().getOrElse(false)) {
+            submitted.put(KotlinWorkAction.Target.Android, getAndroidKotlinDirectory());
+        } else {
+            new OutputSink(getAndroidKotlinDirectory().get().getAsFile().toPath()).sweep();
+        }
+
+        for (final Map.Entry<KotlinWorkAction.Target, DirectoryProperty> entry : submitted.entrySet()) {
+            submit(queue, entry.getKey(), entry.getValue());
+        }
+
+        queue.await();
+
+        long totalBytes = 0;
+        int totalFiles = 0;
+        for (final Map.Entry<KotlinWorkAction.Target, DirectoryProperty> entry : submitted.entrySet()) {
+            long bytes = 0;
+            int files = 0;
+            try (Stream<Path> stream = Files.walk(entry.getValue().get().getAsFile().toPath())) {
+                for (final Path path : (Iterable<Path>) stream.filter(Files::isRegularFile)::iterator) {
+                    bytes += Files.size(path);
+                    files++;
+                }
+            }
+            totalBytes += bytes;
+            totalFiles += files;
+
+            metrics.output(entry.getKey().name(), Metrics.readDuration(durationFile(entry.getKey())))
+                    .count("target", entry.getKey().name())
+                    .count("files", files)
+                    .count("bytes", bytes);
+        }
+        metrics.phase("kotlin", start)
+                .count("targets", submitted.size())
+                .count("files", totalFiles)
+                .count("bytes", totalBytes);
+
+        metrics.log(getLogger());
+        if (getMetricsReportFile().isPresent()) {
+            metrics.write(getMetricsReportFile().get().getAsFile().toPath());
+        }
+    }
+}
@@ -6,17 +6,20 @@ import com.android.build.gradle.tasks.MergeResources;
 import org.gradle.api.GradleException;
 import org.gradle.api.NamedDomainObjectContainer;
 import org.gradle.api.Project;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.TaskContainer;
-import org.gradle.language.jvm.tasks.ProcessResources;
+import org.gradle.api.tasks.TaskProvider;
 import org.jetbrains.kotlin.gradle.dsl.KotlinMultiplatformExtension;
 import org.jetbrains.kotlin.gradle.plugin.KotlinSourceSet;
 import org.jetbrains.kotlin.gradle.plugin.KotlinTarget;
 import org.jetbrains.kotlin.gradle.plugin.mpp.KotlinAndroidTarget;
 import org.jetbrains.kotlin.gradle.targets.jvm.KotlinJvmTarget;
-import org.jetbrains.kotlin.gradle.tasks.KotlinCompile;
 
 import javax.annotation.Nonnull;
-import java.nio.file.Path;
 
 @SuppressWarnings("UnstableApiUsage")
 public class I18nPlugin implements org.gradle.api.Plugin<Project> {
@@ -27,48 +30,85 @@ public class I18nPlugin implements org.gradle.api.Plugin<Project> {
         }
 
         final I18nExtension i18nExtension = target.getExtensions().create("i18n", I18nExtension.class);
-        final Path generatedPath = Path.of(target.getBuildDir().getAbsolutePath(), "generated", "i18n");
-        final Path generatedCommon = generatedPath.resolve("commonKotlin");
-        final Path generatedAndroidResPath = generatedPath.resolve("androidResource");
-        final Path generatedJvmResPath = generatedPath.resolve("jvmResource");
-        final Path generatedAndroidKtPath = generatedPath.resolve("androidKotlin");
-        final Path generatedJvmKtPath = generatedPath.resolve("jvmKotlin");
+        i18nExtension.getJvmBackend().convention(JvmBackend.ResourceBundle);
+        i18nExtension.getJvmInstanceCacheSize().convention(16);
+        i18nExtension.getAndroidBackend().convention(AndroidBackend.Resources);
+        i18nExtension.getComposeMode().convention(ComposeMode.Remember);
+        i18nExtension.getIsPrecompiledFormatEnabled().convention(false);
+        i18nExtension.getIsSparseResourcesEnabled().convention(false);
+        i18nExtension.getKotlinShardSize().convention(0);
+
+        final DirectoryProperty buildDirectory = target.getLayout().getBuildDirectory();
+        final Provider<Directory> intermediatesDirectory = buildDirectory.dir("intermediates/i18n");
+        final Provider<RegularFile> jvmTemplatesFile = intermediatesDirectory.map(dir -> dir.file("jvmTemplates.bin"));
+        final Provider<RegularFile> precompiledTemplatesFile = i18nExtension.getIsPrecompiledFormatEnabled()
+                .flatMap(enabled -> enabled ? jvmTemplatesFile : target.getProviders().<RegularFile>provider(() -> null));
+        final Provider<Directory> reportsDirectory = buildDirectory.dir("reports/i18n");
+
+        // Targets are discovered after the tasks are registered, so these are wired as properties.
+        final Property<Boolean> isJvmEnabled = target.getObjects().property(Boolean.class).convention(false);
+        final Property<Boolean> isAndroidEnabled = target.getObjects().property(Boolean.class).convention(false);
 
         final TaskContainer tasks = target.getTasks();
-        final I18nTask i18nTask = tasks.create("generateI18nSources", I18nTask.class);
-        i18nTask.getI18nDirectory().value(i18nExtension.getI18nDirectory());
-        i18nTask.getPackageName().value(i18nExtension.getPackageName());
-        i18nTask.getIsComposeEnabled().value(i18nExtension.getIsComposeEnabled());
-        i18nTask.getLanguages().value(target.provider(i18nExtension::getLanguages));
-        i18nTask.getCommonKotlinDirectory().set(generatedCommon.toAbsolutePath().toFile());
-        i18nTask.getAndroidResourceDirectory().set(generatedAndroidResPath.toAbsolutePath().toFile());
-        i18nTask.getAndroidKotlinDirectory().set(generatedAndroidKtPath.toAbsolutePath().toFile());
-        i18nTask.getJvmResourceDirectory().set(generatedJvmResPath.toAbsolutePath().toFile());
-        i18nTask.getJvmKotlinDirectory().set(generatedJvmKtPath.toAbsolutePath().toFile());
+        final TaskProvider<I18nTask> i18nTask = tasks.register("generateI18nSources", I18nTask.class, task -> {
+            task.getI18nDirectory().value(i18nExtension.getI18nDirectory());
+            task.getPackageName().value(i18nExtension.getPackageName());
+            task.getLanguages().value(target.provider(i18nExtension::getLanguages));
+            task.getJvmBackend().value(i18nExtension.getJvmBackend());
+            task.getIsSparseResourcesEnabled().value(i18nExtension.getIsSparseResourcesEnabled());
+            task.getParseParallelism().set(target.getGradle().getStartParameter().getMaxWorkerCount());
+            task.getIsJvmEnabled().value(isJvmEnabled);
+            task.getIsAndroidEnabled().value(isAndroidEnabled);
+            task.getAndroidResourceDirectory().set(buildDirectory.dir("generated/i18n/androidResource"));
+            task.getJvmResourceDirectory().set(buildDirectory.dir("generated/i18n/jvmResource"));
+            task.getSchemaFile().set(intermediatesDirectory.map(dir -> dir.file("schema.txt")));
+            task.getStateDirectory().set(intermediatesDirectory.map(dir -> dir.dir("state")));
+            task.getCacheDirectory().set(intermediatesDirectory.map(dir -> dir.dir("cache")));
+            task.getFallbackReportFile().set(reportsDirectory.map(dir -> dir.file("fallback.txt")));
+            task.getMetricsReportFile().set(reportsDirectory.map(dir -> dir.file(task.getName() + ".json")));
+            task.getJvmTemplatesFile().set(precompiledTemplatesFile);
+        });
+
+        final TaskProvider<I18nKotlinTask> i18nKotlinTask = tasks.register("generateI18nKotlin", I18nKotlinTask.class, task -> {
+            task.getSchemaFile().set(i18nTask.flatMap(I18nTask::getSchemaFile));
+            task.getJvmTemplatesFile().set(i18nTask.flatMap(I18nTask::getJvmTemplatesFile));
+            task.getPackageName().value(i18nExtension.getPackageName());
+            task.getIsComposeEnabled().value(i18nExtension.getIsComposeEnabled());
+            task.getComposeMode().value(i18nExtension.getComposeMode());
+            task.getJvmBackend().value(i18nExtension.getJvmBackend());
+            task.getJvmInstanceCacheSize().value(i18nExtension.getJvmInstanceCacheSize());
+            task.getAndroidBackend().value(i18nExtension.getAndroidBackend());
+            task.getKotlinShardSize().value(i18nExtension.getKotlinShardSize());
+            task.getIsJvmEnabled().value(isJvmEnabled);
+            task.getIsAndroidEnabled().value(isAndroidEnabled);
+            task.getMetricsReportFile().set(reportsDirectory.map(dir -> dir.file(task.getName() + ".json")));
+            task.getCommonKotlinDirectory().set(buildDirectory.dir("generated/i18n/commonKotlin"));
+            task.getAndroidKotlinDirectory().set(buildDirectory.dir("generated/i18n/androidKotlin"));
+            task.getJvmKotlinDirectory().set(buildDirectory.dir("generated/i18n/jvmKotlin"));
+        });
 
-        tasks.withType(KotlinCompile.class, t -> t.dependsOn(i18nTask));
-        tasks.withType(ProcessResources.class, t -> t.dependsOn(i18nTask));
-        tasks.withType(MergeResources.class, t -> t.dependsOn(i18nTask));
-        tasks.withType(ExtractDeepLinksTask.class, t -> t.dependsOn(i18nTask));
+        // Kotlin and Jvm resource source dirs carry their producer task, Android resources of BaseExtension do not.
+        tasks.withType(MergeResources.class).configureEach(t -> t.dependsOn(i18nTask));
+        tasks.withType(ExtractDeepLinksTask.class).configureEach(t -> t.dependsOn(i18nTask));
 
         final KotlinMultiplatformExtension kotlin = target.getExtensions().getByType(KotlinMultiplatformExtension.class);
-        kotlin.getSourceSets().getByName("commonMain").getKotlin().srcDir(generatedCommon.toFile());
+        kotlin.getSourceSets().getByName("commonMain").getKotlin().srcDir(i18nKotlinTask.flatMap(I18nKotlinTask::getCommonKotlinDirectory));
         kotlin.getTargets().all((final KotlinTarget kotlinTarget) -> {
             if (kotlinTarget instanceof KotlinAndroidTarget) {
                 kotlin.getSourceSets().getByName(kotlinTarget.getName() + "Main")
-                        .getKotlin().srcDir(generatedAndroidKtPath);
+                        .getKotlin().srcDir(i18nKotlinTask.flatMap(I18nKotlinTask::getAndroidKotlinDirectory));
 
                 final BaseExtension base = target.getExtensions().getByType(BaseExtension.class);
-                base.getSourceSets().getByName("main").getRes().srcDir(generatedAndroidResPath.toFile());
+                base.getSourceSets().getByName("main").getRes().srcDir(i18nTask.flatMap(I18nTask::getAndroidResourceDirectory));
 
-                i18nTask.getIsAndroidEnabled().value(true);
+                isAndroidEnabled.set(true);
             } else if (kotlinTarget instanceof KotlinJvmTarget) {
                 final NamedDomainObjectContainer<KotlinSourceSet> sourceSets = kotlin.getSourceSets();
                 final KotlinSourceSet main = sourceSets.getByName(kotlinTarget.getName() + "Main");
-                main.getKotlin().srcDir(generatedJvmKtPath);
-                main.getResources().srcDir(generatedJvmResPath);
+                main.getKotlin().srcDir(i18nKotlinTask.flatMap(I18nKotlinTask::getJvmKotlinDirectory));
+                main.getResources().srcDir(i18nTask.flatMap(I18nTask::getJvmResourceDirectory));
 
-                i18nTask.getIsJvmEnabled().value(true);
+                isJvmEnabled.set(true);
             }
         });
     }
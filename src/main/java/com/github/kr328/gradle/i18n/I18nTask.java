@@ -2,16 +2,45 @@ package com.github.kr328.gradle.i18n;
 
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileType;
+import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.SetProperty;
+import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.LocalState;
+import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.ChangeType;
+import org.gradle.work.FileChange;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+import lombok.Data;
 
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
+@CacheableTask
 public abstract class I18nTask extends DefaultTask {
     @Input
     public abstract Property<Boolean> getIsJvmEnabled();
@@ -19,10 +48,9 @@ public abstract class I18nTask extends DefaultTask {
     @Input
     public abstract Property<Boolean> getIsAndroidEnabled();
 
-    @Input
-    public abstract Property<Boolean> getIsComposeEnabled();
-
+    @Incremental
     @InputDirectory
+    @PathSensitive(PathSensitivity.RELATIVE)
     public abstract DirectoryProperty getI18nDirectory();
 
     @Input
@@ -31,86 +59,456 @@ public abstract class I18nTask extends DefaultTask {
     @Input
     public abstract SetProperty<Language> getLanguages();
 
-    @OutputDirectory
-    public abstract DirectoryProperty getCommonKotlinDirectory();
+    @Input
+    public abstract Property<JvmBackend> getJvmBackend();
 
-    @OutputDirectory
-    public abstract DirectoryProperty getAndroidResourceDirectory();
+    @Input
+    public abstract Property<Boolean> getIsSparseResourcesEnabled();
 
     @OutputDirectory
-    public abstract DirectoryProperty getAndroidKotlinDirectory();
+    public abstract DirectoryProperty getAndroidResourceDirectory();
 
     @OutputDirectory
     public abstract DirectoryProperty getJvmResourceDirectory();
 
-    @OutputDirectory
-    public abstract DirectoryProperty getJvmKotlinDirectory();
+    @OutputFile
+    public abstract RegularFileProperty getSchemaFile();
+
+    @Optional
+    @OutputFile
+    public abstract RegularFileProperty getJvmTemplatesFile();
+
+    @OutputFile
+    public abstract RegularFileProperty getFallbackReportFile();
+
+    @LocalState
+    public abstract DirectoryProperty getStateDirectory();
+
+    @Internal
+    public abstract DirectoryProperty getCacheDirectory();
+
+    // Timings differ on every run, so the report is not tracked as an output.
+    @Internal
+    public abstract RegularFileProperty getMetricsReportFile();
+
+    // Threads parsing source files, the plugin sets it to --max-workers.
+    @Internal
+    public abstract Property<Integer> getParseParallelism();
+
+    // Resource file submitted to a worker, measured once the queue is drained.
+    @Data
+    private static final class SubmittedOutput {
+        private final ResourceWorkAction.Target target;
+        private final String language;
+        private final String name;
+        private final Path file;
+        private final Path durationFile;
+        private final int keys;
+        private final int variables;
+    }
+
+    // Keys and variables written for a language, complete files carry root templates for untranslated keys.
+    @Data
+    private static final class TemplateCounts {
+        private final int keys;
+        private final int variables;
+        private final int translatedKeys;
+        private final int translatedVariables;
+
+        static TemplateCounts of(final FlattenTemplates root, final FlattenTemplates templates) {
+            int variables = 0;
+            int translatedKeys = 0;
+            int translatedVariables = 0;
+            for (final Map.Entry<FlattenTemplates.Key, Template> entry : root.getTemplates().entrySet()) {
+                final Template template = templates.getTemplates().get(entry.getKey());
+                if (template == null) {
+                    variables += entry.getValue().getVariables().size();
+                    continue;
+                }
+
+                variables += template.getVariables().size();
+                translatedKeys++;
+                translatedVariables += template.getVariables().size();
+            }
+
+            return new TemplateCounts(root.getTemplates().size(), variables, translatedKeys, translatedVariables);
+        }
+    }
+
+    private static final String ROOT_GROUP = "root";
+    private static final String PARSED_FILES_NAME = "parsed.bin";
+
+    private static List<FlattenTemplates> parseInto(final ParsedFiles parsed, final ParseCache cache, final Path i18nPath, final List<Path> files, final int parallelism) throws IOException, ProcessorException {
+        final List<FlattenTemplates> results = Parser.parseFiles(files, parallelism, cache);
+
+        for (int i = 0; i < files.size(); i++) {
+            final Path relative = i18nPath.relativize(files.get(i));
+
+            parsed.put(relative.getName(0).toString(), relative.getName(1).toString(), results.get(i));
+        }
+
+        return results;
+    }
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    private ResourceWorkAction.Target jvmTarget() {
+        if (getJvmBackend().get() == JvmBackend.StringTable) {
+            return ResourceWorkAction.Target.JvmStringTable;
+        }
+        return ResourceWorkAction.Target.Jvm;
+    }
+
+    private String jvmResourceFile(final String languageTag) {
+        if (getJvmBackend().get() == JvmBackend.StringTable) {
+            return Naming.jvmStringTableFile(getPackageName().get(), languageTag);
+        }
+        return Naming.jvmResourceFile(getPackageName().get(), languageTag);
+    }
+
+    private SubmittedOutput submit(
+            final WorkQueue queue,
+            final ResourceWorkAction.Target target,
+            final String language,
+            final String languageTag,
+            final String file,
+            final TemplateCounts counts,
+            final Path rootFile,
+            final Path templatesFile,
+            final DirectoryProperty outputDirectory
+    ) {
+        final Path durationFile = getTemporaryDir().toPath().resolve(target + "-" + language + ".duration");
+
+        queue.submit(ResourceWorkAction.class, parameters -> {
+            parameters.getTarget().set(target);
+            parameters.getPackageName().set(getPackageName());
+            parameters.getLanguageTag().set(languageTag);
+            parameters.getRootFile().set(rootFile.toFile());
+            parameters.getTemplatesFile().set(templatesFile.toFile());
+            parameters.getIsSparse().set(getIsSparseResourcesEnabled());
+            parameters.getOutputDirectory().set(outputDirectory);
+            parameters.getDurationFile().set(durationFile.toFile());
+        });
+
+        // Same selection as the generator, string tables are always complete.
+        final boolean isSparse = getIsSparseResourcesEnabled().get() && target != ResourceWorkAction.Target.JvmStringTable;
+        final int keys = isSparse ? counts.getTranslatedKeys() : counts.getKeys();
+        final int variables = isSparse ? counts.getTranslatedVariables() : counts.getVariables();
+
+        final Path path = outputDirectory.get().getAsFile().toPath().resolve(file);
+        return new SubmittedOutput(target, language, file, path, durationFile, keys, variables);
+    }
+
+    // Lists root keys left untranslated by each language, these are served by the fallback at runtime.
+    private boolean writeFallbackReport(final Path path, final FlattenTemplates root, final Map<String, FlattenTemplates> merged) throws IOException {
+        final StringBuilder builder = new StringBuilder();
+
+        final boolean isSparse = getIsSparseResourcesEnabled().get();
+        final FlattenTemplates empty = new FlattenTemplates(Map.of());
+
+        final Map<String, String> namesByTag = new HashMap<>();
+        for (final Language language : getLanguages().get()) {
+            if (language.getJvmLanguageTag() != null) {
+                namesByTag.put(language.getJvmLanguageTag(), language.getName());
+            }
+        }
+
+        final TreeMap<String, Language> languages = new TreeMap<>();
+        for (final Language language : getLanguages().get()) {
+            languages.put(language.getName(), language);
+        }
+
+        for (final Language language : languages.values()) {
+            final FlattenTemplates current = merged.getOrDefault(language.getName(), empty);
+
+            // Sparse resources resolve untranslated keys through parent locales (zh_TW, zh, root), complete ones carry root text.
+            final List<String> parents = new ArrayList<>();
+            if (isSparse && language.getJvmLanguageTag() != null) {
+                for (String tag = Naming.parentLanguageTag(language.getJvmLanguageTag()); tag != null; tag = Naming.parentLanguageTag(tag)) {
+                    if (namesByTag.containsKey(tag)) {
+                        parents.add(namesByTag.get(tag));
+                    }
+                }
+            }
+
+            final List<String> fallbacks = new ArrayList<>();
+            for (final FlattenTemplates.Key key : root.getTemplates().keySet()) {
+                if (current.getTemplates().containsKey(key)) {
+                    continue;
+                }
+
+                String source = ROOT_GROUP;
+                for (final String parent : parents) {
+                    if (merged.getOrDefault(parent, empty).getTemplates().containsKey(key)) {
+                        source = parent;
+                        break;
+                    }
+                }
+
+                fallbacks.add(key.join(".") + " -> " + source);
+            }
+
+            getLogger().info("Language {}: {} of {} keys untranslated", language.getName(), fallbacks.size(), root.getTemplates().size());
+
+            builder.append(language.getName()).append(' ').append(fallbacks.size()).append('/').append(root.getTemplates().size()).append('\n');
+            for (final String fallback : fallbacks) {
+                builder.append("    ").append(fallback).append('\n');
+            }
+        }
+
+        return new OutputSink(path.getParent()).write(path.getFileName().toString(), builder, StandardCharsets.UTF_8);
+    }
 
     @TaskAction
-    public void doAction() throws Exception {
+    public void doAction(final InputChanges inputChanges) throws Exception {
+        final Metrics metrics = new Metrics(getPath());
+        long phaseStart = System.nanoTime();
+
         final boolean isJvmEnabled = getIsJvmEnabled().getOrElse(false);
         final boolean isAndroidEnabled = getIsAndroidEnabled().getOrElse(false);
-        final boolean isComposeEnabled = getIsComposeEnabled().getOrElse(false);
-
-        final Path commonKtPath = getCommonKotlinDirectory().get().getAsFile().toPath();
-        final Path androidResPath = getAndroidResourceDirectory().get().getAsFile().toPath();
-        final Path androidKtPath = getAndroidKotlinDirectory().get().getAsFile().toPath();
-        final Path jvmResPath = getJvmResourceDirectory().get().getAsFile().toPath();
-        final Path jvmKtPath = getJvmKotlinDirectory().get().getAsFile().toPath();
 
-        FilesUtils.deleteChildren(commonKtPath);
-        FilesUtils.deleteChildren(androidResPath);
-        FilesUtils.deleteChildren(androidKtPath);
-        FilesUtils.deleteChildren(jvmResPath);
-        FilesUtils.deleteChildren(jvmKtPath);
+        final OutputSink androidResSink = new OutputSink(getAndroidResourceDirectory().get().getAsFile().toPath());
+        final OutputSink jvmResSink = new OutputSink(getJvmResourceDirectory().get().getAsFile().toPath());
+        final Path schemaPath = getSchemaFile().get().getAsFile().toPath();
+        final Path parsedFilesPath = getStateDirectory().get().getAsFile().toPath().resolve(PARSED_FILES_NAME);
 
         final Path i18nPath = getI18nDirectory().getAsFile().get().toPath();
-        final FlattenTemplates root = Parser.parseDirectory(i18nPath.resolve("root"));
-        final Generator generator = new Generator(root, getPackageName().get());
+        final Set<String> groups = new HashSet<>();
+        groups.add(ROOT_GROUP);
+        for (final Language language : getLanguages().get()) {
+            groups.add(language.getName());
+        }
 
-        generator.generateDefaultFormatter(commonKtPath);
+        ParsedFiles parsed = inputChanges.isIncremental() ? ParsedFiles.load(parsedFilesPath) : null;
+        final boolean isFullRebuild = parsed == null;
+        final Set<String> changedGroups = new HashSet<>();
+
+        final List<Path> pendingFiles = new ArrayList<>();
+        if (isFullRebuild) {
+            parsed = new ParsedFiles();
+            for (final String group : groups) {
+                final Path path = i18nPath.resolve(group);
+                if (!ROOT_GROUP.equals(group) && !Files.exists(path)) {
+                    continue;
+                }
+
+                pendingFiles.addAll(Parser.listFiles(path));
+            }
+
+            changedGroups.addAll(groups);
+        } else {
+            for (final FileChange change : inputChanges.getFileChanges(getI18nDirectory())) {
+                if (change.getFileType() == FileType.DIRECTORY) {
+                    continue;
+                }
+
+                final Path relative = i18nPath.relativize(change.getFile().toPath());
+                if (relative.getNameCount() != 2) {
+                    continue;
+                }
+
+                final String group = relative.getName(0).toString();
+                if (!groups.contains(group)) {
+                    continue;
+                }
 
-        generator.generateCommonKotlin(commonKtPath, false);
-        if (isComposeEnabled) {
-            generator.generateCommonKotlin(commonKtPath, true);
+                final String file = relative.getName(1).toString();
+                if (change.getChangeType() == ChangeType.REMOVED) {
+                    parsed.remove(group, file);
+                } else {
+                    pendingFiles.add(change.getFile().toPath());
+                }
+
+                changedGroups.add(group);
+            }
         }
 
-        generator.generateCommonExpectKotlin(commonKtPath);
+        metrics.phase("changes", phaseStart)
+                .count("incremental", isFullRebuild ? 0 : 1)
+                .count("changedGroups", changedGroups.size());
 
-        if (isJvmEnabled) {
-            generator.generateJvmKotlin(jvmKtPath);
-            generator.generateJvmResource(jvmResPath, null, root);
+        final String pluginVersion = I18nTask.class.getPackage().getImplementationVersion();
+        final ParseCache cache;
+        if (getCacheDirectory().isPresent() && pluginVersion != null) {
+            cache = new ParseCache(getCacheDirectory().get().getAsFile().toPath(), pluginVersion);
+        } else {
+            cache = null;
         }
 
-        if (isAndroidEnabled) {
-            generator.generateAndroidKotlin(androidKtPath);
-            generator.generateAndroidResource(androidResPath, null, root);
+        // Files are read, parsed as yaml and lexed as templates in one streaming pass.
+        phaseStart = System.nanoTime();
+        long parsedBytes = 0;
+        for (final Path file : pendingFiles) {
+            parsedBytes += Files.size(file);
+        }
+        int parsedKeys = 0;
+        int parsedVariables = 0;
+        for (final FlattenTemplates result : parseInto(parsed, cache, i18nPath, pendingFiles, getParseParallelism().getOrElse(1))) {
+            parsedKeys += result.getTemplates().size();
+            parsedVariables += Metrics.countVariables(result.getTemplates().values());
         }
+        metrics.phase("parse", phaseStart)
+                .count("files", pendingFiles.size())
+                .count("bytes", parsedBytes)
+                .count("keys", parsedKeys)
+                .count("variables", parsedVariables)
+                .count("cacheHits", cache != null ? cache.getHits() : 0);
 
+        phaseStart = System.nanoTime();
+        final FlattenTemplates root = parsed.merge(ROOT_GROUP);
+        final Map<String, FlattenTemplates> merged = new HashMap<>();
         for (final Language language : getLanguages().get()) {
-            final Path path = i18nPath.resolve(language.getName());
-            if (!Files.exists(path)) {
+            if (parsed.contains(language.getName())) {
+                merged.put(language.getName(), parsed.merge(language.getName()));
+            }
+        }
+        metrics.phase("merge", phaseStart)
+                .count("languages", merged.size())
+                .count("keys", root.getTemplates().size())
+                .count("variables", Metrics.countVariables(root.getTemplates().values()));
+
+        // Every generated file depends on root keys, only language resources depend on language files.
+        final boolean isRootChanged = changedGroups.contains(ROOT_GROUP);
+        if (isRootChanged) {
+            phaseStart = System.nanoTime();
+            final boolean changed = Schema.createFrom(root).writeTo(schemaPath);
+            metrics.phase("schema", phaseStart)
+                    .count("keys", root.getTemplates().size())
+                    .count("changed", changed ? 1 : 0)
+                    .count("bytes", Files.size(schemaPath));
+        }
+
+        // Precompiled formatters embed every language, so these are always encoded in full and written only when they differ.
+        if (getJvmTemplatesFile().isPresent()) {
+            phaseStart = System.nanoTime();
+            final Path templatesPath = getJvmTemplatesFile().get().getAsFile().toPath();
+            final TreeMap<String, FlattenTemplates> languages = new TreeMap<>();
+            for (final Language language : getLanguages().get()) {
+                if (language.getJvmLanguageTag() != null && merged.containsKey(language.getName())) {
+                    languages.put(language.getJvmLanguageTag(), merged.get(language.getName()));
+                }
+            }
+
+            // String tables are complete, so only sparse bundles fall through to parent locales.
+            final boolean isChained = getIsSparseResourcesEnabled().get() && jvmTarget() != ResourceWorkAction.Target.JvmStringTable;
+            final boolean changed = new LocalizedTemplates(root, languages, isChained).save(templatesPath);
+            metrics.phase("jvmTemplates", phaseStart)
+                    .count("languages", languages.size())
+                    .count("changed", changed ? 1 : 0)
+                    .count("bytes", Files.size(templatesPath));
+        }
+
+        phaseStart = System.nanoTime();
+        final boolean isFallbackReportChanged = writeFallbackReport(getFallbackReportFile().get().getAsFile().toPath(), root, merged);
+        metrics.phase("fallbackReport", phaseStart)
+                .count("changed", isFallbackReportChanged ? 1 : 0);
+
+        phaseStart = System.nanoTime();
+        final WorkQueue queue = getWorkerExecutor().noIsolation();
+        final List<SubmittedOutput> submitted = new ArrayList<>();
+
+        // Workers read templates from files written once here, parameters would serialize the catalog for every item.
+        final Path templatesDirectory = getTemporaryDir().toPath().resolve("templates");
+        final Path rootFile = templatesDirectory.resolve(ROOT_GROUP + ".bin");
+        TemplatesCodec.save(rootFile, root);
+
+        if (isRootChanged) {
+            final TemplateCounts rootCounts = TemplateCounts.of(root, root);
+
+            if (isJvmEnabled) {
+                submitted.add(submit(queue, jvmTarget(), ROOT_GROUP, null, jvmResourceFile(null), rootCounts, rootFile, rootFile, getJvmResourceDirectory()));
+                jvmResSink.retain(jvmResourceFile(null));
+            }
+
+            if (isAndroidEnabled) {
+                submitted.add(submit(queue, ResourceWorkAction.Target.Android, ROOT_GROUP, null, Naming.androidResourceFile(null), rootCounts, rootFile, rootFile, getAndroidResourceDirectory()));
+                androidResSink.retain(Naming.androidResourceFile(null));
+            }
+        }
+
+        for (final Language language : getLanguages().get()) {
+            if (!isRootChanged && !changedGroups.contains(language.getName())) {
+                continue;
+            }
+
+            final String jvmLanguageTag = language.getJvmLanguageTag();
+            final String androidLanguageTag = language.getAndroidLanguageTag();
+
+            final FlattenTemplates current = merged.get(language.getName());
+            if (current == null) {
+                if (isJvmEnabled && jvmLanguageTag != null) {
+                    jvmResSink.delete(jvmResourceFile(jvmLanguageTag));
+                }
+
+                if (isAndroidEnabled && androidLanguageTag != null) {
+                    androidResSink.delete(Naming.androidResourceFile(androidLanguageTag));
+                }
+
                 continue;
             }
 
-            final FlattenTemplates current = Parser.parseDirectory(path);
+            final Path currentFile = templatesDirectory.resolve(language.getName() + ".bin");
+            TemplatesCodec.save(currentFile, current);
+
+            final TemplateCounts counts = TemplateCounts.of(root, current);
+
             if (isJvmEnabled) {
-                final String jvmLanguageTag = language.getJvmLanguageTag();
                 if (jvmLanguageTag == null) {
                     throw new ProcessorException("Jvm enabled but language " + language.getName() + " tag is not set");
                 }
 
-                generator.generateJvmResource(jvmResPath, jvmLanguageTag, current);
+                submitted.add(submit(queue, jvmTarget(), language.getName(), jvmLanguageTag, jvmResourceFile(jvmLanguageTag), counts, rootFile, currentFile, getJvmResourceDirectory()));
+                jvmResSink.retain(jvmResourceFile(jvmLanguageTag));
             }
 
             if (isAndroidEnabled) {
-                final String androidLanguageTag = language.getAndroidLanguageTag();
                 if (androidLanguageTag == null) {
                     throw new ProcessorException("Android enabled but language " + language.getName() + " tag is not set");
                 }
 
-                generator.generateAndroidResource(androidResPath, androidLanguageTag, current);
+                submitted.add(submit(queue, ResourceWorkAction.Target.Android, language.getName(), androidLanguageTag, Naming.androidResourceFile(androidLanguageTag), counts, rootFile, currentFile, getAndroidResourceDirectory()));
+                androidResSink.retain(Naming.androidResourceFile(androidLanguageTag));
+            }
+        }
+
+        queue.await();
+
+        // Workers run concurrently, the phase covers submission until the last resource is written.
+        final Metrics.Entry resources = metrics.phase("resources", phaseStart);
+
+        long resourceBytes = 0;
+        for (final SubmittedOutput output : submitted) {
+            final long bytes = Files.size(output.getFile());
+            resourceBytes += bytes;
+
+            metrics.output(output.getName(), Metrics.readDuration(output.getDurationFile()))
+                    .count("target", output.getTarget().name())
+                    .count("language", output.getLanguage())
+                    .count("keys", output.getKeys())
+                    .count("variables", output.getVariables())
+                    .count("bytes", bytes);
+        }
+        resources.count("files", submitted.size())
+                .count("bytes", resourceBytes);
+
+        phaseStart = System.nanoTime();
+        if (isFullRebuild) {
+            androidResSink.sweep();
+            jvmResSink.sweep();
+
+            if (cache != null) {
+                cache.prune();
             }
         }
+
+        parsed.save(parsedFilesPath);
+        metrics.phase("state", phaseStart)
+                .count("bytes", Files.size(parsedFilesPath));
+
+        metrics.log(getLogger());
+        if (getMetricsReportFile().isPresent()) {
+            metrics.write(getMetricsReportFile().get().getAsFile().toPath());
+        }
     }
 }
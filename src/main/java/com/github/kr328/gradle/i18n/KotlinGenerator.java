@@ -0,0 +1,1167 @@
+package com.github.kr328.gradle.i18n;
+
+import com.squareup.kotlinpoet.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+@AllArgsConstructor
+public class KotlinGenerator {
+    private static final AnnotationSpec KOTLIN_FILE_ANNOTATION = AnnotationSpec.builder(Symbols.SUPPRESS)
+            .addMember("%S, %S, %S, %S, %S", "RedundantVisibilityModifier", "FunctionName", "PropertyName", "RemoveExplicitTypeArguments", "MemberVisibilityCanBePrivate")
+            .build();
+    private final Schema schema;
+    private final String packageName;
+    // I18nComposable is only generated with compose, platform factories must not reference it otherwise.
+    private final boolean isComposeEnabled;
+    // Keys per impl file, 0 keeps every impl function a member of I18nImpl.
+    private final int shardSize;
+
+    @Data
+    private static final class Shard {
+        private final String name;
+        private final List<FlattenTemplates.Key> keys;
+    }
+
+    // Top-level containers are packed in order into shards of at most shardSize keys, top-level values count as one container.
+    // Only a container larger than shardSize is split, in order, into shards of its own.
+    private List<Shard> buildShards() {
+        final Map<String, List<FlattenTemplates.Key>> groups = new LinkedHashMap<>();
+        for (final FlattenTemplates.Key key : schema.getEntries().keySet()) {
+            final String container = key.getDepth() > 1 ? key.getNames().get(0) : null;
+
+            groups.computeIfAbsent(container, k -> new ArrayList<>()).add(key);
+        }
+
+        final List<Shard> shards = new ArrayList<>();
+        final Set<String> names = new HashSet<>();
+        String packedContainer = null;
+        List<FlattenTemplates.Key> packed = new ArrayList<>();
+        for (final Map.Entry<String, List<FlattenTemplates.Key>> group : groups.entrySet()) {
+            final List<FlattenTemplates.Key> keys = group.getValue();
+
+            if (!packed.isEmpty() && packed.size() + keys.size() > shardSize) {
+                addShard(shards, names, Naming.implShardName(packedContainer, 0), packed);
+                packed = new ArrayList<>();
+            }
+
+            if (keys.size() > shardSize) {
+                for (int part = 0; part * shardSize < keys.size(); part++) {
+                    addShard(shards, names, Naming.implShardName(group.getKey(), part), keys.subList(part * shardSize, Math.min(keys.size(), (part + 1) * shardSize)));
+                }
+
+                continue;
+            }
+
+            if (packed.isEmpty()) {
+                packedContainer = group.getKey();
+            }
+            packed.addAll(keys);
+        }
+
+        if (!packed.isEmpty()) {
+            addShard(shards, names, Naming.implShardName(packedContainer, 0), packed);
+        }
+
+        return shards;
+    }
+
+    private static void addShard(final List<Shard> shards, final Set<String> names, String name, final List<FlattenTemplates.Key> keys) {
+        // File names must stay distinct on case-insensitive file systems too.
+        while (!names.add(name.toLowerCase(Locale.ROOT))) {
+            name = name + "_";
+        }
+
+        shards.add(new Shard(name, keys));
+    }
+
+    // Impl functions are members of I18nImpl, or I18nImpl extensions in one file per shard so that kotlinc can split the work.
+    private void addImplFunctions(
+            final OutputSink sink,
+            final TypeSpec.Builder implClass,
+            final BiFunction<FlattenTemplates.Key, Integer, FunSpec.Builder> buildFunction
+    ) throws IOException {
+        final Map<FlattenTemplates.Key, Integer> ordinals = new HashMap<>();
+        for (final FlattenTemplates.Key key : schema.getEntries().keySet()) {
+            ordinals.put(key, ordinals.size());
+        }
+
+        if (shardSize <= 0) {
+            for (final FlattenTemplates.Key key : schema.getEntries().keySet()) {
+                implClass.addFunction(buildFunction.apply(key, ordinals.get(key)).build());
+            }
+
+            return;
+        }
+
+        final ClassName implClassName = new ClassName(packageName, Naming.I18N_IMPL_CLASS_NAME);
+        for (final Shard shard : buildShards()) {
+            final FileSpec.Builder file = FileSpec.builder(packageName, shard.getName())
+                    .addAnnotation(KOTLIN_FILE_ANNOTATION);
+
+            for (final FlattenTemplates.Key key : shard.getKeys()) {
+                file.addFunction(buildFunction.apply(key, ordinals.get(key)).receiver(implClassName).build());
+            }
+
+            sink.writeKotlin(file.build());
+        }
+    }
+
+    // Shard files reach the state of I18nImpl from outside the class.
+    private KModifier implStateVisibility() {
+        return shardSize > 0 ? KModifier.INTERNAL : KModifier.PRIVATE;
+    }
+
+    private List<ParameterSpec> buildVariableParameters(final FlattenTemplates.Key key) {
+        final List<Schema.Variable> variables = Objects.requireNonNull(schema.getEntries().get(key));
+
+        return variables.stream()
+                .map(v -> ParameterSpec.builder(v.getName(), v.getType().kotlinType()).build())
+                .collect(Collectors.toList());
+    }
+
+    private CodeBlock buildFormatParameters(final FlattenTemplates.Key key) {
+        final List<String> variables = Objects.requireNonNull(schema.getEntries().get(key))
+                .stream().map(Schema.Variable::getName)
+                .collect(Collectors.toList());
+        final String format = String.join(",", Collections.nCopies(variables.size(), "%N"));
+
+        return CodeBlock.of(format, variables.toArray(Object[]::new));
+    }
+
+    // Default formatter calls skip runtime format parsing through the precompiled formats of matched locale.
+    private void addPrecompiledFormat(final FunSpec.Builder fun, final FlattenTemplates.Key key) {
+        fun.addAnnotation(AnnotationSpec.builder(Symbols.SUPPRESS).addMember("%S", "UNCHECKED_CAST").build())
+                .beginControlFlow("if (F === DefaultFormatter)")
+                .addStatement("return FORMATS.%N(%L) as T", Naming.implFunctionName(key), buildFormatParameters(key))
+                .endControlFlow();
+    }
+
+    // Keys with only plain specifiers and %f are assembled by DefaultFormatter itself, decided here once per key.
+    private boolean isDirectFormat(final FlattenTemplates.Key key) {
+        return schema.getEntries().get(key).stream()
+                .allMatch(v -> v.isPlain() || v.getType() == Template.Part.Variable.FormatType.Float);
+    }
+
+    private boolean hasDecimal(final FlattenTemplates.Key key) {
+        return schema.getEntries().get(key).stream()
+                .anyMatch(v -> v.getType() == Template.Part.Variable.FormatType.Decimal);
+    }
+
+    private boolean hasDirectDecimal() {
+        return schema.getEntries().keySet().stream().anyMatch(key -> isDirectFormat(key) && hasDecimal(key));
+    }
+
+    // Plain %d prints like the appended number only with ascii digits, impls keep that check per locale in ASCII_DIGITS.
+    private PropertySpec.Builder buildAsciiDigits(final String localeExpression) {
+        return PropertySpec.builder("ASCII_DIGITS", TypeNames.BOOLEAN)
+                .addModifiers(implStateVisibility())
+                .initializer("%T.getInstance(%L).zeroDigit == '0'", Symbols.DECIMAL_FORMAT_SYMBOLS, localeExpression);
+    }
+
+    private void addDirectFormat(final FunSpec.Builder fun, final FlattenTemplates.Key key, final String localeExpression, final CodeBlock string) {
+        fun.addAnnotation(AnnotationSpec.builder(Symbols.SUPPRESS).addMember("%S", "UNCHECKED_CAST").build())
+                .beginControlFlow(hasDecimal(key) ? "if (F === DefaultFormatter && ASCII_DIGITS)" : "if (F === DefaultFormatter)")
+                .addStatement(
+                        "return DefaultFormatter.%N(%L, %L, %L) as T",
+                        Naming.directFormatterFunctionName(schema.getEntries().get(key)),
+                        localeExpression,
+                        string,
+                        buildFormatParameters(key)
+                )
+                .endControlFlow();
+    }
+
+    private CodeBlock buildPrecompiledVariable(final Template.Part.Variable variable) {
+        switch (variable.getFormat()) {
+            case "%s": {
+                return CodeBlock.of("%N", variable.getName());
+            }
+            case "%d": {
+                return CodeBlock.of("if (ASCII_DIGITS) %N.toString() else String.format(LOCALE, %S, %N)", variable.getName(), variable.getFormat(), variable.getName());
+            }
+            case "%x": {
+                return CodeBlock.of("%N.toULong().toString(16)", variable.getName());
+            }
+            case "%o": {
+                return CodeBlock.of("%N.toULong().toString(8)", variable.getName());
+            }
+            default: {
+                return CodeBlock.of("String.format(LOCALE, %S, %N)", variable.getFormat(), variable.getName());
+            }
+        }
+    }
+
+    private FunSpec.Builder buildPrecompiledFormat(final Generator generator, final FlattenTemplates.Key key, final Template template) throws ProcessorException {
+        final FunSpec.Builder fun = FunSpec.builder(Naming.implFunctionName(key))
+                .addParameters(buildVariableParameters(key))
+                .returns(TypeNames.STRING);
+
+        int capacity = 0;
+        for (final Template.Part part : template.getParts()) {
+            if (part instanceof Template.Part.Literal) {
+                final String text = ((Template.Part.Literal) part).getText();
+
+                // Literal text is a format string too, keep '%%' and '%n' semantics by formatting it as a whole.
+                if (text.indexOf('%') >= 0) {
+                    return fun.addCode(
+                            "return String.format(LOCALE, %S, %L)",
+                            generator.createFormatTextFromTemplate(key, template),
+                            buildFormatParameters(key)
+                    );
+                }
+
+                capacity += text.length();
+            } else {
+                capacity += 16;
+            }
+        }
+
+        final CodeBlock.Builder code = CodeBlock.builder().add("return StringBuilder(%L)", capacity);
+        for (final Template.Part part : template.getParts()) {
+            if (part instanceof Template.Part.Literal) {
+                // %S renders line breaks as trimMargin() raw strings, which would be evaluated on every call.
+                final String[] lines = ((Template.Part.Literal) part).getText().split("\n", -1);
+                for (int i = 0; i < lines.length; i++) {
+                    if (i > 0) {
+                        code.add(".append('\\n')");
+                    }
+                    if (!lines[i].isEmpty()) {
+                        code.add(".append(%S)", lines[i]);
+                    }
+                }
+            } else if (part instanceof Template.Part.Variable) {
+                code.add(".append(%L)", buildPrecompiledVariable((Template.Part.Variable) part));
+            }
+        }
+        code.add(".toString()");
+
+        return fun.addCode(code.build());
+    }
+
+    public void generateCommonExpectKotlin(final OutputSink sink) throws IOException {
+        final TypeSpec.Builder implClass = TypeSpec.expectClassBuilder(Naming.I18N_IMPL_CLASS_NAME);
+
+        addImplFunctions(sink, implClass, (key, ordinal) -> {
+            final FunSpec.Builder fun = FunSpec.builder(Naming.implFunctionName(key));
+
+            // Members of an expect class are implicitly expect, top-level extensions are not.
+            if (shardSize > 0) {
+                fun.addModifiers(KModifier.EXPECT);
+            }
+
+            if (buildFormatParameters(key).isNotEmpty()) {
+                final TypeVariableName returnType = TypeVariableName.get("T");
+
+                return fun.addTypeVariable(returnType)
+                        .addParameter("F", Naming.formatterName(packageName, returnType))
+                        .addParameters(buildVariableParameters(key))
+                        .returns(returnType);
+            } else {
+                return fun.returns(TypeNames.STRING);
+            }
+        });
+
+        sink.writeKotlin(
+                FileSpec.builder(packageName, Naming.I18N_IMPL_CLASS_NAME)
+                        .addAnnotation(KOTLIN_FILE_ANNOTATION)
+                        .addType(implClass.build())
+                        .build()
+        );
+    }
+
+    public void generateCommonKotlin(final OutputSink sink, final boolean composable, final boolean stable) throws ProcessorException, IOException {
+        final ClassName implClassName = new ClassName(packageName, Naming.I18N_IMPL_CLASS_NAME);
+
+        final BiFunction<ClassName, TreeTemplates.Child.Container, TypeSpec> generateType = new BiFunction<>() {
+            @Override
+            public TypeSpec apply(final ClassName className, final TreeTemplates.Child.Container root) {
+                final TypeSpec.Builder rootType = TypeSpec.valueClassBuilder(className.getSimpleName())
+                        .addAnnotation(Symbols.JVM_INLINE)
+                        .addProperty(
+                                PropertySpec.builder("IMPL", implClassName)
+                                        .initializer("IMPL")
+                                        .build()
+                        )
+                        .primaryConstructor(
+                                FunSpec.constructorBuilder()
+                                        .addParameter("IMPL", implClassName)
+                                        .build()
+                        );
+
+                // Wrappers only hold the impl, which never changes after creation.
+                if (composable && stable) {
+                    rootType.addAnnotation(Symbols.IMMUTABLE);
+                }
+
+                for (final Map.Entry<String, TreeTemplates.Child> entry : root.getChildren().entrySet()) {
+                    if (entry.getValue() instanceof TreeTemplates.Child.Value) {
+                        final TreeTemplates.Child.Value value = (TreeTemplates.Child.Value) entry.getValue();
+
+                        final CodeBlock formatParameters = buildFormatParameters(value.getKey());
+                        if (formatParameters.isNotEmpty()) {
+                            final FunSpec.Builder withFormatter = FunSpec.builder(entry.getKey());
+                            final FunSpec.Builder withoutFormatter = FunSpec.builder(entry.getKey());
+
+                            final TypeVariableName returnType = TypeVariableName.get("T");
+                            final List<ParameterSpec> parameters = buildVariableParameters(value.getKey());
+
+                            withFormatter.addTypeVariable(returnType)
+                                    .addParameter("F", Naming.formatterName(packageName, returnType))
+                                    .addParameters(parameters)
+                                    .returns(returnType);
+                            withoutFormatter
+                                    .addParameters(parameters)
+                                    .returns(TypeNames.STRING)
+                                    .addCode("return %N(DefaultFormatter, %L)", entry.getKey(), formatParameters);
+
+                            if (composable) {
+                                withFormatter.addAnnotation(Symbols.COMPOSABLE);
+                                withoutFormatter.addAnnotation(Symbols.COMPOSABLE);
+
+                                withFormatter.addCode(
+                                        "return %M(IMPL, F, %L) { IMPL.%N(F, %L) }",
+                                        Symbols.REMEMBER,
+                                        formatParameters,
+                                        Naming.implFunctionName(value.getKey()),
+                                        formatParameters
+                                );
+                            } else {
+                                withFormatter.addCode(
+                                        "return IMPL.%N(F, %L)",
+                                        Naming.implFunctionName(value.getKey()),
+                                        formatParameters
+                                );
+                            }
+
+                            rootType.addFunction(withFormatter.build());
+                            rootType.addFunction(withoutFormatter.build());
+                        } else {
+                            final FunSpec.Builder fun = FunSpec.builder(entry.getKey())
+                                    .returns(TypeNames.STRING);
+
+                            // Plain lookups cost less than a slot table entry, only the legacy compose output remembers them.
+                            if (composable && !stable) {
+                                fun.addAnnotation(Symbols.COMPOSABLE);
+
+                                fun.addCode(
+                                        "return %M(IMPL) { IMPL.%N() }",
+                                        Symbols.REMEMBER,
+                                        Naming.implFunctionName(value.getKey())
+                                );
+                            } else {
+                                fun.addCode(
+                                        "return IMPL.%N()",
+                                        Naming.implFunctionName(value.getKey())
+                                );
+                            }
+
+                            rootType.addFunction(fun.build());
+                        }
+                    } else if (entry.getValue() instanceof TreeTemplates.Child.Container) {
+                        final TreeTemplates.Child.Container container = (TreeTemplates.Child.Container) entry.getValue();
+                        final ClassName childClassName = className.nestedClass(NameUtils.snakeToCamel(entry.getKey()));
+                        final TypeSpec childType = apply(childClassName, container);
+
+                        rootType.addType(childType).addProperty(
+                                PropertySpec.builder(entry.getKey(), childClassName)
+                                        .getter(FunSpec.getterBuilder().addCode("return %T(IMPL)", childClassName).build())
+                                        .build()
+                        );
+                    }
+                }
+
+                return rootType.build();
+            }
+        };
+
+        final String className;
+        if (composable) {
+            className = Naming.I18N_COMPOSABLE_CLASS_NAME;
+        } else {
+            className = Naming.I18N_CLASS_NAME;
+        }
+
+        final FileSpec.Builder file = FileSpec.builder(packageName, className)
+                .addAnnotation(KOTLIN_FILE_ANNOTATION)
+                .addType(generateType.apply(new ClassName(packageName, className), TreeTemplates.createFrom(schema.getEntries().keySet()).getRoot()));
+
+        if (composable && stable) {
+            final ClassName composableClassName = new ClassName(packageName, className);
+
+            file.addProperty(
+                    PropertySpec.builder("LocalI18n", ParameterizedTypeName.get(Symbols.PROVIDABLE_COMPOSITION_LOCAL, composableClassName))
+                            .initializer(
+                                    "%M<%T> { error(%S) }",
+                                    Symbols.STATIC_COMPOSITION_LOCAL_OF,
+                                    composableClassName,
+                                    "No " + className + " provided"
+                            )
+                            .build()
+            );
+        }
+
+        sink.writeKotlin(file.build());
+    }
+
+    // Factories over loadI18nImpl(locale), instances are shared per locale when the cache is enabled.
+    private void addJvmFactories(final FileSpec.Builder file, final int instanceCacheSize) {
+        final ClassName i18nImplClassName = new ClassName(packageName, Naming.I18N_IMPL_CLASS_NAME);
+
+        final String loader;
+        if (instanceCacheSize > 0) {
+            loader = "cachedI18nImpl";
+
+            final ClassName entryClassName = new ClassName(packageName, "I18nImplCacheEntry");
+            file.addType(
+                    TypeSpec.classBuilder(entryClassName)
+                            .addModifiers(KModifier.PRIVATE)
+                            .primaryConstructor(
+                                    FunSpec.constructorBuilder()
+                                            .addParameter("impl", i18nImplClassName)
+                                            .build()
+                            )
+                            .addProperty(
+                                    PropertySpec.builder("impl", i18nImplClassName)
+                                            .initializer("impl")
+                                            .build()
+                            )
+                            .addProperty(
+                                    PropertySpec.builder("used", TypeNames.LONG)
+                                            .addAnnotation(Symbols.VOLATILE)
+                                            .mutable(true)
+                                            .initializer("System.nanoTime()")
+                                            .build()
+                            )
+                            .build()
+            );
+
+            file.addProperty(
+                    PropertySpec.builder("IMPL_CACHE", ParameterizedTypeName.get(Symbols.CONCURRENT_HASH_MAP, Symbols.LOCALE, entryClassName))
+                            .addModifiers(KModifier.PRIVATE)
+                            .initializer("%T()", Symbols.CONCURRENT_HASH_MAP)
+                            .build()
+            );
+
+            // Hits are lock-free reads that stamp the entry. Misses load outside the map, keep whichever instance was
+            // published first, then evict the least recently used other locales beyond the bound.
+            file.addFunction(
+                    FunSpec.builder("cachedI18nImpl")
+                            .addModifiers(KModifier.PRIVATE)
+                            .addParameter("locale", Symbols.LOCALE)
+                            .returns(i18nImplClassName)
+                            .addStatement("val cached = IMPL_CACHE[locale]")
+                            .beginControlFlow("if (cached != null)")
+                            .addStatement("cached.used = System.nanoTime()")
+                            .addStatement("return cached.impl")
+                            .endControlFlow()
+                            .addStatement("val loaded = %T(loadI18nImpl(locale))", entryClassName)
+                            .addStatement("val entry = IMPL_CACHE.putIfAbsent(locale, loaded) ?: loaded")
+                            .beginControlFlow("while (IMPL_CACHE.size > %L)", instanceCacheSize)
+                            .addStatement("var eldest: %T? = null", Symbols.LOCALE)
+                            .addStatement("var eldestUsed = 0L")
+                            .beginControlFlow("for ((key, value) in IMPL_CACHE)")
+                            .addStatement("val used = value.used")
+                            .beginControlFlow("if (key != locale && (eldest == null || used - eldestUsed < 0))")
+                            .addStatement("eldest = key")
+                            .addStatement("eldestUsed = used")
+                            .endControlFlow()
+                            .endControlFlow()
+                            .addStatement("IMPL_CACHE.remove(eldest ?: break)")
+                            .endControlFlow()
+                            .addStatement("return entry.impl")
+                            .build()
+            );
+
+            file.addFunction(
+                    FunSpec.builder("clearI18nCache")
+                            .addStatement("IMPL_CACHE.clear()")
+                            .build()
+            );
+        } else {
+            loader = "loadI18nImpl";
+        }
+
+        final ClassName i18nClassName = new ClassName(packageName, Naming.I18N_CLASS_NAME);
+        final ClassName i18nComposableName = new ClassName(packageName, Naming.I18N_COMPOSABLE_CLASS_NAME);
+        file.addFunction(
+                FunSpec.builder("createI18n")
+                        .addParameter(
+                                ParameterSpec.builder("locale", Symbols.LOCALE)
+                                        .defaultValue("%T.getDefault()", Symbols.LOCALE)
+                                        .build()
+                        )
+                        .returns(i18nClassName)
+                        .addCode("return %T(%N(locale))", i18nClassName, loader)
+                        .build()
+        );
+        if (isComposeEnabled) {
+            file.addFunction(
+                    FunSpec.builder("createI18nComposable")
+                            .addParameter(
+                                    ParameterSpec.builder("locale", Symbols.LOCALE)
+                                            .defaultValue("%T.getDefault()", Symbols.LOCALE)
+                                            .build()
+                            )
+                            .returns(i18nComposableName)
+                            .addCode("return %T(%N(locale))", i18nComposableName, loader)
+                            .build()
+            );
+        }
+    }
+
+    public void generateJvmKotlin(final OutputSink sink, final boolean isFormatPrecompiled, final int instanceCacheSize) throws IOException {
+        final TypeSpec.Builder implClass = TypeSpec.classBuilder(Naming.I18N_IMPL_CLASS_NAME)
+                .addModifiers(KModifier.ACTUAL)
+                .addProperty(
+                        PropertySpec.builder("RES", Symbols.RESOURCE_BUNDLE)
+                                .initializer("RES")
+                                .build()
+                )
+                .primaryConstructor(
+                        FunSpec.constructorBuilder()
+                                .addParameter("RES", Symbols.RESOURCE_BUNDLE)
+                                .build()
+                );
+
+        if (isFormatPrecompiled) {
+            implClass.addProperty(
+                    PropertySpec.builder("FORMATS", new ClassName(packageName, Naming.I18N_FORMATS_CLASS_NAME))
+                            .addModifiers(implStateVisibility())
+                            .initializer("createI18nFormats(RES.locale)")
+                            .build()
+            );
+        } else if (hasDirectDecimal()) {
+            implClass.addProperty(buildAsciiDigits("RES.locale").build());
+        }
+
+        addImplFunctions(sink, implClass, (key, ordinal) -> {
+            final CodeBlock formatParameters = buildFormatParameters(key);
+
+            final FunSpec.Builder fun = FunSpec.builder(Naming.implFunctionName(key))
+                    .addModifiers(KModifier.ACTUAL);
+
+            if (formatParameters.isNotEmpty()) {
+                final TypeVariableName returnType = TypeVariableName.get("T");
+
+                fun.addTypeVariable(returnType)
+                        .addParameter("F", Naming.formatterName(packageName, returnType))
+                        .addParameters(buildVariableParameters(key))
+                        .returns(returnType);
+
+                if (isFormatPrecompiled) {
+                    addPrecompiledFormat(fun, key);
+                } else if (isDirectFormat(key)) {
+                    addDirectFormat(fun, key, "RES.locale", CodeBlock.of("RES.getString(%S)", Naming.jvmResourceKey(key)));
+                }
+
+                fun.addCode(
+                                "return F.%N(RES.locale, RES.getString(%S), %L)",
+                                Naming.formatterFunctionName(schema.getEntries().get(key)),
+                                Naming.jvmResourceKey(key),
+                                formatParameters
+                        );
+            } else {
+                fun.returns(TypeNames.STRING)
+                        .addCode("return RES.getString(%S)", Naming.jvmResourceKey(key));
+            }
+
+            return fun;
+        });
+
+        final ClassName i18nImplClassName = new ClassName(packageName, Naming.I18N_IMPL_CLASS_NAME);
+        final FunSpec loadImplFunc = FunSpec.builder("loadI18nImpl")
+                .addModifiers(KModifier.PRIVATE)
+                .addParameter("locale", Symbols.LOCALE)
+                .returns(i18nImplClassName)
+                .addCode(
+                        "return %T(%T.getBundle(%S, locale))",
+                        i18nImplClassName,
+                        Symbols.RESOURCE_BUNDLE,
+                        String.join(".", packageName, Naming.JVM_RESOURCE_BUNDLE_NAME)
+                )
+                .build();
+
+        final FileSpec.Builder file = FileSpec.builder(packageName, Naming.I18N_IMPL_CLASS_NAME)
+                .addAnnotation(KOTLIN_FILE_ANNOTATION)
+                .addType(implClass.build())
+                .addFunction(loadImplFunc);
+
+        addJvmFactories(file, instanceCacheSize);
+
+        sink.writeKotlin(file.build());
+    }
+
+    public void generateJvmStringTableKotlin(final OutputSink sink, final boolean isFormatPrecompiled, final int instanceCacheSize) throws IOException {
+        final int count = schema.getEntries().size();
+        final int offsetsOffset = Generator.JVM_STRING_TABLE_HEADER_SIZE + count * 4;
+
+        final TypeSpec.Builder implClass = TypeSpec.classBuilder(Naming.I18N_IMPL_CLASS_NAME)
+                .addModifiers(KModifier.ACTUAL)
+                .addProperty(
+                        PropertySpec.builder("LOCALE", Symbols.LOCALE)
+                                .initializer("LOCALE")
+                                .build()
+                )
+                .addProperty(
+                        PropertySpec.builder("TABLE", Symbols.BYTE_BUFFER)
+                                .addModifiers(KModifier.PRIVATE)
+                                .initializer("TABLE")
+                                .build()
+                )
+                .primaryConstructor(
+                        FunSpec.constructorBuilder()
+                                .addParameter("LOCALE", Symbols.LOCALE)
+                                .addParameter("TABLE", Symbols.BYTE_BUFFER)
+                                .build()
+                )
+                .addProperty(
+                        PropertySpec.builder("STRINGS", ParameterizedTypeName.get(TypeNames.ARRAY, TypeNames.STRING.copy(true, List.of())))
+                                .addModifiers(KModifier.PRIVATE)
+                                .initializer("arrayOfNulls(TABLE.getInt(12))")
+                                .build()
+                )
+                .addProperty(
+                        PropertySpec.builder("DATA_OFFSET", TypeNames.INT)
+                                .addModifiers(KModifier.PRIVATE)
+                                .initializer("%L + (STRINGS.size + 1) * 4", offsetsOffset)
+                                .build()
+                )
+                // Strings are decoded from the table on first access and shared by keys with identical text.
+                .addFunction(
+                        FunSpec.builder("string")
+                                .addModifiers(implStateVisibility())
+                                .addParameter("index", TypeNames.INT)
+                                .returns(TypeNames.STRING)
+                                .addStatement("val ref = TABLE.getInt(%L + index * 4)", Generator.JVM_STRING_TABLE_HEADER_SIZE)
+                                .addStatement("return STRINGS[ref] ?: decode(ref).also { STRINGS[ref] = it }")
+                                .build()
+                )
+                .addFunction(
+                        FunSpec.builder("decode")
+                                .addModifiers(KModifier.PRIVATE)
+                                .addParameter("ref", TypeNames.INT)
+                                .returns(TypeNames.STRING)
+                                .addStatement("val start = TABLE.getInt(%L + ref * 4)", offsetsOffset)
+                                .addStatement("val bytes = ByteArray(TABLE.getInt(%L + ref * 4) - start)", offsetsOffset + 4)
+                                .addStatement("val buffer = TABLE.duplicate()")
+                                .addStatement("(buffer as %T).position(DATA_OFFSET + start)", Symbols.BUFFER)
+                                .addStatement("buffer.get(bytes)")
+                                .addStatement("return String(bytes, Charsets.UTF_8)")
+                                .build()
+                );
+
+        if (isFormatPrecompiled) {
+            implClass.addProperty(
+                    PropertySpec.builder("FORMATS", new ClassName(packageName, Naming.I18N_FORMATS_CLASS_NAME))
+                            .addModifiers(implStateVisibility())
+                            .initializer("createI18nFormats(LOCALE)")
+                            .build()
+            );
+        } else if (hasDirectDecimal()) {
+            implClass.addProperty(buildAsciiDigits("LOCALE").build());
+        }
+
+        addImplFunctions(sink, implClass, (key, ordinal) -> {
+            final CodeBlock formatParameters = buildFormatParameters(key);
+
+            final FunSpec.Builder fun = FunSpec.builder(Naming.implFunctionName(key))
+                    .addModifiers(KModifier.ACTUAL);
+
+            if (formatParameters.isNotEmpty()) {
+                final TypeVariableName returnType = TypeVariableName.get("T");
+
+                fun.addTypeVariable(returnType)
+                        .addParameter("F", Naming.formatterName(packageName, returnType))
+                        .addParameters(buildVariableParameters(key))
+                        .returns(returnType);
+
+                if (isFormatPrecompiled) {
+                    addPrecompiledFormat(fun, key);
+                } else if (isDirectFormat(key)) {
+                    addDirectFormat(fun, key, "LOCALE", CodeBlock.of("string(%L)", ordinal));
+                }
+
+                fun.addCode("return F.%N(LOCALE, string(%L), %L)", Naming.formatterFunctionName(schema.getEntries().get(key)), ordinal, formatParameters);
+            } else {
+                fun.returns(TypeNames.STRING)
+                        .addCode("return string(%L)", ordinal);
+            }
+
+            return fun;
+        });
+
+        final PropertySpec control = PropertySpec.builder("CONTROL", Symbols.RESOURCE_BUNDLE_CONTROL)
+                .addModifiers(KModifier.PRIVATE)
+                .initializer("%T.getControl(%T.FORMAT_DEFAULT)", Symbols.RESOURCE_BUNDLE_CONTROL, Symbols.RESOURCE_BUNDLE_CONTROL)
+                .build();
+
+        // Tables on the file system are mapped, tables inside archives are read into a heap buffer.
+        final ClassName i18nImplClassName = new ClassName(packageName, Naming.I18N_IMPL_CLASS_NAME);
+        final FunSpec loadTableFunc = FunSpec.builder("loadTable")
+                .addModifiers(KModifier.PRIVATE)
+                .addParameter("name", TypeNames.STRING)
+                .returns(Symbols.BYTE_BUFFER.copy(true, List.of()))
+                .addStatement("val url = %T::class.java.getResource(name) ?: return null", i18nImplClassName)
+                .beginControlFlow("val table = if (url.protocol == %S)", "file")
+                .addStatement(
+                        "%T.open(%T.get(url.toURI()), %T.READ).use { it.map(%T.MapMode.READ_ONLY, 0, it.size()) }",
+                        Symbols.FILE_CHANNEL, Symbols.PATHS, Symbols.STANDARD_OPEN_OPTION, Symbols.FILE_CHANNEL
+                )
+                .nextControlFlow("else")
+                .addStatement("%T.wrap(url.openStream().use { it.readBytes() })", Symbols.BYTE_BUFFER)
+                .endControlFlow()
+                .beginControlFlow(
+                        "if (table.getInt(0) != %L || table.getInt(4) != %L || table.getInt(8) != %L)",
+                        "0x" + Integer.toHexString(Generator.JVM_STRING_TABLE_MAGIC), Generator.JVM_STRING_TABLE_VERSION, count
+                )
+                .addStatement("throw %T(%S + name, %S, %S)", Symbols.MISSING_RESOURCE_EXCEPTION, "Mismatched string table ", Naming.I18N_IMPL_CLASS_NAME, "")
+                .endControlFlow()
+                .addStatement("return table")
+                .build();
+
+        // Same candidate order as ResourceBundle.getBundle, tables already contain root fallbacks so the first hit wins.
+        final FunSpec loadImplFunc = FunSpec.builder("loadI18nImpl")
+                .addModifiers(KModifier.PRIVATE)
+                .addParameter("locale", Symbols.LOCALE)
+                .returns(i18nImplClassName)
+                .addStatement(
+                        "val candidates = CONTROL.getCandidateLocales(%S, locale).filter { it != %T.ROOT } + CONTROL.getCandidateLocales(%S, %T.getDefault()).filter { it != %T.ROOT } + %T.ROOT",
+                        "", Symbols.LOCALE, "", Symbols.LOCALE, Symbols.LOCALE, Symbols.LOCALE
+                )
+                .beginControlFlow("for (candidate in candidates)")
+                .addStatement(
+                        "val table = loadTable(CONTROL.toBundleName(%S, candidate) + %S) ?: continue",
+                        Naming.jvmStringTableBaseName(packageName),
+                        Naming.JVM_STRING_TABLE_EXTENSION
+                )
+                .addStatement("return %T(candidate, table)", i18nImplClassName)
+                .endControlFlow()
+                .addStatement("throw %T(%S + locale, %S, %S)", Symbols.MISSING_RESOURCE_EXCEPTION, "String table not found for locale ", Naming.I18N_IMPL_CLASS_NAME, "")
+                .build();
+
+        final FileSpec.Builder file = FileSpec.builder(packageName, Naming.I18N_IMPL_CLASS_NAME)
+                .addAnnotation(KOTLIN_FILE_ANNOTATION)
+                .addType(implClass.build())
+                .addProperty(control)
+                .addFunction(loadTableFunc)
+                .addFunction(loadImplFunc);
+
+        addJvmFactories(file, instanceCacheSize);
+
+        sink.writeKotlin(file.build());
+    }
+
+    private static Template inheritedTemplate(final LocalizedTemplates templates, final Map<String, String> parents, final String parent, final FlattenTemplates.Key key) {
+        for (String tag = parent; tag != null; tag = parents.get(tag)) {
+            final Template template = templates.getLanguages().get(tag).getTemplates().get(key);
+            if (template != null) {
+                return template;
+            }
+        }
+
+        return templates.getRoot().getTemplates().get(key);
+    }
+
+    public void generateJvmFormatsKotlin(final OutputSink sink, final LocalizedTemplates templates) throws ProcessorException, IOException {
+        final Generator generator = new Generator(templates.getRoot(), packageName);
+        final ClassName formatsClassName = new ClassName(packageName, Naming.I18N_FORMATS_CLASS_NAME);
+        final FunSpec constructor = FunSpec.constructorBuilder()
+                .addParameter("LOCALE", Symbols.LOCALE)
+                .build();
+
+        final TypeSpec.Builder rootClass = TypeSpec.classBuilder(formatsClassName)
+                .addModifiers(KModifier.INTERNAL, KModifier.OPEN)
+                .primaryConstructor(constructor)
+                .addProperty(
+                        PropertySpec.builder("LOCALE", Symbols.LOCALE)
+                                .addModifiers(KModifier.PROTECTED)
+                                .initializer("LOCALE")
+                                .build()
+                )
+                .addProperty(
+                        PropertySpec.builder("ASCII_DIGITS", TypeNames.BOOLEAN)
+                                .addModifiers(KModifier.PROTECTED)
+                                .initializer("%T.getInstance(LOCALE).zeroDigit == '0'", Symbols.DECIMAL_FORMAT_SYMBOLS)
+                                .build()
+                );
+
+        final List<FlattenTemplates.Key> keys = schema.getEntries().entrySet().stream()
+                .filter(e -> !e.getValue().isEmpty())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        for (final FlattenTemplates.Key key : keys) {
+            rootClass.addFunction(
+                    buildPrecompiledFormat(generator, key, templates.getRoot().getTemplates().get(key))
+                            .addModifiers(KModifier.OPEN)
+                            .build()
+            );
+        }
+
+        final FileSpec.Builder file = FileSpec.builder(packageName, Naming.I18N_FORMATS_CLASS_NAME)
+                .addAnnotation(KOTLIN_FILE_ANNOTATION)
+                .addType(rootClass.build());
+
+        final CodeBlock.Builder selector = CodeBlock.builder()
+                .beginControlFlow("return when (%T.getControl(%T.FORMAT_DEFAULT).toBundleName(%S, locale))", Symbols.RESOURCE_BUNDLE_CONTROL, Symbols.RESOURCE_BUNDLE_CONTROL, Naming.JVM_RESOURCE_BUNDLE_NAME);
+
+        // Sparse bundles fall through to parent locales, so a language class extends the class of its nearest parent language.
+        final Map<String, String> parents = new HashMap<>();
+        if (templates.isSparse()) {
+            for (final String tag : templates.getLanguages().keySet()) {
+                String parent = Naming.parentLanguageTag(tag);
+                while (parent != null && !templates.getLanguages().containsKey(parent)) {
+                    parent = Naming.parentLanguageTag(parent);
+                }
+                if (parent != null) {
+                    parents.put(tag, parent);
+                }
+            }
+        }
+
+        // Languages only override keys whose template differs from the inherited one.
+        for (final Map.Entry<String, FlattenTemplates> language : templates.getLanguages().entrySet()) {
+            final String parent = parents.get(language.getKey());
+            final ClassName languageClassName = new ClassName(packageName, Naming.formatsClassName(language.getKey()));
+            final TypeSpec.Builder languageClass = TypeSpec.classBuilder(languageClassName)
+                    .addModifiers(KModifier.PRIVATE)
+                    .primaryConstructor(constructor)
+                    .superclass(parent == null ? formatsClassName : new ClassName(packageName, Naming.formatsClassName(parent)))
+                    .addSuperclassConstructorParameter("LOCALE");
+
+            if (parents.containsValue(language.getKey())) {
+                languageClass.addModifiers(KModifier.OPEN);
+            }
+
+            for (final FlattenTemplates.Key key : keys) {
+                final Template template = language.getValue().getTemplates().get(key);
+                if (template == null || template.equals(inheritedTemplate(templates, parents, parent, key))) {
+                    continue;
+                }
+
+                languageClass.addFunction(
+                        buildPrecompiledFormat(generator, key, template)
+                                .addModifiers(KModifier.OVERRIDE)
+                                .build()
+                );
+            }
+
+            file.addType(languageClass.build());
+            selector.addStatement("%S -> %T(locale)", Naming.JVM_RESOURCE_BUNDLE_NAME + "_" + language.getKey(), languageClassName);
+        }
+
+        selector.addStatement("else -> %T(locale)", formatsClassName).endControlFlow();
+
+        sink.writeKotlin(
+                file.addFunction(
+                        FunSpec.builder("createI18nFormats")
+                                .addModifiers(KModifier.INTERNAL)
+                                .addParameter("locale", Symbols.LOCALE)
+                                .returns(formatsClassName)
+                                .addCode(selector.build())
+                                .build()
+                ).build()
+        );
+    }
+
+    public void generateAndroidKotlin(final OutputSink sink, final boolean isCached) throws IOException {
+        final TypeSpec.Builder implClass = TypeSpec.classBuilder(Naming.I18N_IMPL_CLASS_NAME)
+                .addModifiers(KModifier.ACTUAL)
+                .addProperty(
+                        PropertySpec.builder("RES", Symbols.RESOURCES)
+                                .initializer("RES")
+                                .build()
+                )
+                .primaryConstructor(
+                        FunSpec.constructorBuilder()
+                                .addParameter("RES", Symbols.RESOURCES)
+                                .build()
+                );
+
+        // Locale and strings resolved once, indexed by key ordinal, until the owner reports a configuration change.
+        final String localeExpression;
+        if (isCached) {
+            final TypeName stringsName = ParameterizedTypeName.get(TypeNames.ARRAY, TypeNames.STRING.copy(true, List.of()));
+            final int count = schema.getEntries().size();
+
+            implClass.addProperty(
+                    PropertySpec.builder("LOCALE", Symbols.LOCALE)
+                            .addModifiers(implStateVisibility())
+                            .addAnnotation(Symbols.VOLATILE)
+                            .mutable(true)
+                            .initializer("RES.configuration.locales[0]")
+                            .build()
+            ).addProperty(
+                    PropertySpec.builder("STRINGS", stringsName)
+                            .addModifiers(KModifier.PRIVATE)
+                            .addAnnotation(Symbols.VOLATILE)
+                            .mutable(true)
+                            .initializer("arrayOfNulls(%L)", count)
+                            .build()
+            ).addFunction(
+                    FunSpec.builder("string")
+                            .addModifiers(implStateVisibility())
+                            .addParameter("index", TypeNames.INT)
+                            .addParameter("id", TypeNames.INT)
+                            .returns(TypeNames.STRING)
+                            .addStatement("val strings = STRINGS")
+                            .addStatement("return strings[index] ?: RES.getString(id).also { strings[index] = it }")
+                            .build()
+            );
+
+            final FunSpec.Builder onConfigurationChanged = FunSpec.builder("onConfigurationChanged")
+                    .addStatement("STRINGS = arrayOfNulls(%L)", count)
+                    .addStatement("LOCALE = RES.configuration.locales[0]");
+
+            if (hasDirectDecimal()) {
+                implClass.addProperty(buildAsciiDigits("LOCALE").addAnnotation(Symbols.VOLATILE).mutable(true).build());
+                onConfigurationChanged.addStatement("ASCII_DIGITS = %T.getInstance(LOCALE).zeroDigit == '0'", Symbols.DECIMAL_FORMAT_SYMBOLS);
+            }
+
+            implClass.addFunction(onConfigurationChanged.build());
+
+            localeExpression = "LOCALE";
+        } else {
+            localeExpression = "RES.configuration.locales[0]";
+        }
+
+        addImplFunctions(sink, implClass, (key, ordinal) -> {
+            final CodeBlock string;
+            if (isCached) {
+                string = CodeBlock.of("string(%L, R.string.%N)", ordinal, Naming.androidResourceKey(key));
+            } else {
+                string = CodeBlock.of("RES.getString(R.string.%N)", Naming.androidResourceKey(key));
+            }
+
+            final CodeBlock formatParameters = buildFormatParameters(key);
+
+            final FunSpec.Builder fun = FunSpec.builder(Naming.implFunctionName(key))
+                    .addModifiers(KModifier.ACTUAL);
+
+            if (formatParameters.isNotEmpty()) {
+                final TypeVariableName returnType = TypeVariableName.get("T");
+
+                fun.addTypeVariable(returnType)
+                        .addParameter("F", Naming.formatterName(packageName, returnType))
+                        .returns(returnType)
+                        .addParameters(buildVariableParameters(key));
+
+                // Without the cached locale there is no per locale digit check, keys with %d keep the formatter.
+                if (isDirectFormat(key) && (isCached || !hasDecimal(key))) {
+                    addDirectFormat(fun, key, localeExpression, string);
+                }
+
+                fun.addCode(
+                                "return F.%N(%L, %L, %L)",
+                                Naming.formatterFunctionName(schema.getEntries().get(key)),
+                                localeExpression,
+                                string,
+                                formatParameters
+                        );
+            } else {
+                fun.returns(TypeNames.STRING)
+                        .addCode("return %L", string);
+            }
+
+            return fun;
+        });
+
+        final ClassName i18nClassName = new ClassName(packageName, Naming.I18N_CLASS_NAME);
+        final ClassName i18nComposableName = new ClassName(packageName, Naming.I18N_COMPOSABLE_CLASS_NAME);
+        final ClassName i18nImplClassName = new ClassName(packageName, Naming.I18N_IMPL_CLASS_NAME);
+        final FunSpec createI18nFunc = FunSpec.builder("createI18n")
+                .addParameter("resources", Symbols.RESOURCES)
+                .returns(i18nClassName)
+                .addCode(
+                        "return %T(%T(resources))",
+                        i18nClassName,
+                        i18nImplClassName
+                )
+                .build();
+        final FunSpec createI18nComposableFunc = FunSpec.builder("createI18nComposable")
+                .addParameter("resources", Symbols.RESOURCES)
+                .returns(i18nComposableName)
+                .addCode(
+                        "return %T(%T(resources))",
+                        i18nComposableName,
+                        i18nImplClassName
+                )
+                .build();
+
+        final FileSpec.Builder file = FileSpec.builder(packageName, Naming.I18N_IMPL_CLASS_NAME)
+                .addAnnotation(KOTLIN_FILE_ANNOTATION)
+                .addType(implClass.build())
+                .addFunction(createI18nFunc);
+
+        if (isComposeEnabled) {
+            file.addFunction(createI18nComposableFunc);
+        }
+
+        sink.writeKotlin(file.build());
+    }
+
+    public void generateDefaultFormatter(final OutputSink sink) throws IOException {
+        final TypeVariableName returnType = TypeVariableName.get("T");
+
+        final TypeSpec.Builder formatter = TypeSpec.funInterfaceBuilder("Formatter")
+                .addTypeVariable(returnType)
+                .addFunction(
+                        FunSpec.builder("format")
+                                .addModifiers(KModifier.ABSTRACT)
+                                .addParameter("locale", Symbols.LOCALE)
+                                .addParameter("format", TypeNames.STRING)
+                                .addParameter(
+                                        ParameterSpec.builder("args", TypeNames.ANY.copy(true, List.of()))
+                                                .addModifiers(KModifier.VARARG)
+                                                .build()
+                                )
+                                .returns(returnType)
+                                .build()
+                );
+
+        // One overload per argument signature used by schema, formatters may override them to skip boxing and the vararg array.
+        final TreeMap<String, List<Schema.Variable>> signatures = new TreeMap<>();
+        final TreeMap<String, List<Schema.Variable>> directSignatures = new TreeMap<>();
+        for (final Map.Entry<FlattenTemplates.Key, List<Schema.Variable>> entry : schema.getEntries().entrySet()) {
+            final List<Schema.Variable> variables = entry.getValue();
+            if (variables.isEmpty()) {
+                continue;
+            }
+
+            signatures.putIfAbsent(Naming.formatterFunctionName(variables), variables);
+            if (isDirectFormat(entry.getKey())) {
+                directSignatures.putIfAbsent(Naming.directFormatterFunctionName(variables), variables);
+            }
+        }
+
+        final TypeSpec.Builder defaultFormatter = TypeSpec.objectBuilder("DefaultFormatter")
+                .addSuperinterface(Naming.formatterName(packageName, TypeNames.STRING), CodeBlock.builder().build())
+                .addFunction(
+                        FunSpec.builder("format")
+                                .addModifiers(KModifier.OVERRIDE)
+                                .addParameter("locale", Symbols.LOCALE)
+                                .addParameter("format", TypeNames.STRING)
+                                .addParameter(
+                                        ParameterSpec.builder("args", TypeNames.ANY.copy(true, List.of()))
+                                                .addModifiers(KModifier.VARARG)
+                                                .build()
+                                )
+                                .returns(TypeNames.STRING)
+                                .addStatement("return String.format(locale, format, *args)")
+                                .build()
+                );
+
+        for (final Map.Entry<String, List<Schema.Variable>> signature : signatures.entrySet()) {
+            final FunSpec.Builder fun = FunSpec.builder(signature.getKey())
+                    .addParameter("locale", Symbols.LOCALE)
+                    .addParameter("format", TypeNames.STRING)
+                    .returns(returnType);
+
+            final List<String> arguments = new ArrayList<>();
+            for (final Schema.Variable variable : signature.getValue()) {
+                final String argument = "a" + arguments.size();
+                fun.addParameter(argument, variable.getType().kotlinType());
+                arguments.add(argument);
+            }
+
+            final CodeBlock argumentList = CodeBlock.of(String.join(", ", Collections.nCopies(arguments.size(), "%N")), arguments.toArray(Object[]::new));
+            formatter.addFunction(fun.addCode("return format(locale, format, %L)", argumentList).build());
+        }
+
+        boolean hasInteger = false;
+        for (final Map.Entry<String, List<Schema.Variable>> signature : directSignatures.entrySet()) {
+            defaultFormatter.addFunction(buildDirectFormat(signature.getKey(), signature.getValue()));
+
+            hasInteger |= signature.getValue().stream().anyMatch(v -> v.getType().signatureCode() == 'L');
+        }
+
+        final FileSpec.Builder file = FileSpec.builder(packageName, "Formatter")
+                .addAnnotation(KOTLIN_FILE_ANNOTATION)
+                .addType(formatter.build())
+                .addType(defaultFormatter.build());
+
+        if (hasInteger) {
+            file.addFunction(buildAppendInteger());
+        }
+
+        sink.writeKotlin(file.build());
+    }
+
+    // Copies literal text and appends each positional argument in one pass over the format. Accessors only call it for
+    // keys whose specifiers are plain or %f, and with ascii digits when a %d is plain, so nothing else needs to be parsed.
+    private static FunSpec buildDirectFormat(final String name, final List<Schema.Variable> variables) {
+        final FunSpec.Builder fun = FunSpec.builder(name)
+                .addModifiers(KModifier.INTERNAL)
+                .addParameter("locale", Symbols.LOCALE)
+                .addParameter("format", TypeNames.STRING)
+                .returns(TypeNames.STRING);
+
+        final List<String> arguments = new ArrayList<>();
+        final CodeBlock.Builder dispatch = CodeBlock.builder().beginControlFlow("when (index)");
+        for (int i = 0; i < variables.size(); i++) {
+            final String argument = "a" + i;
+            fun.addParameter(argument, variables.get(i).getType().kotlinType());
+            arguments.add(argument);
+
+            switch (variables.get(i).getType().signatureCode()) {
+                case 'L': {
+                    dispatch.addStatement("%L -> builder.appendInteger(format[end + 1], %N)", i + 1, argument);
+                    break;
+                }
+                case 'D': {
+                    // Precision and flags of %f stay in the format, only this argument goes through java.util.Formatter.
+                    dispatch.beginControlFlow("%L ->", i + 1)
+                            .addStatement("start = format.indexOf('f', end) + 1")
+                            .addStatement("builder.append(String.format(locale, \"%%\" + format.substring(end + 1, start), %N))", argument)
+                            .endControlFlow();
+                    break;
+                }
+                default: {
+                    dispatch.addStatement("%L -> builder.append(%N)", i + 1, argument);
+                    break;
+                }
+            }
+        }
+        final CodeBlock argumentList = CodeBlock.of(String.join(", ", Collections.nCopies(arguments.size(), "%N")), arguments.toArray(Object[]::new));
+        dispatch.addStatement("else -> return String.format(locale, format, %L)", argumentList).endControlFlow();
+
+        return fun.addStatement("val builder = StringBuilder(format.length + %L)", variables.size() * 16)
+                .addStatement("var start = 0")
+                .addStatement("var percent = format.indexOf('%%')")
+                .beginControlFlow("while (percent >= 0)")
+                .addStatement("builder.append(format, start, percent)")
+                .addStatement("var index = 0")
+                .addStatement("var end = percent + 1")
+                .beginControlFlow("while (format[end] != '$')")
+                .addStatement("index = index * 10 + (format[end] - '0')")
+                .addStatement("end++")
+                .endControlFlow()
+                .addStatement("start = end + 2")
+                .addCode(dispatch.build())
+                .addStatement("percent = format.indexOf('%%', start)")
+                .endControlFlow()
+                .addStatement("return builder.append(format, start, format.length).toString()")
+                .build();
+    }
+
+    // Plain %x and %o print the two's complement of negative values, as java.util.Formatter does for Long.
+    private static FunSpec buildAppendInteger() {
+        return FunSpec.builder("appendInteger")
+                .addModifiers(KModifier.PRIVATE)
+                .receiver(Symbols.STRING_BUILDER)
+                .addParameter("conversion", TypeNames.CHAR)
+                .addParameter("value", TypeNames.LONG)
+                .returns(Symbols.STRING_BUILDER)
+                .beginControlFlow("return when·(conversion)")
+                .addStatement("'x' -> append(value.toULong().toString(16))")
+                .addStatement("'o' -> append(value.toULong().toString(8))")
+                .addStatement("else -> append(value)")
+                .endControlFlow()
+                .build();
+    }
+}
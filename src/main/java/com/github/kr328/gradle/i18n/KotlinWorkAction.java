@@ -0,0 +1,90 @@
+package com.github.kr328.gradle.i18n;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+public abstract class KotlinWorkAction implements WorkAction<KotlinWorkAction.Parameters> {
+    @Override
+    public void execute() {
+        final Parameters parameters = getParameters();
+        final OutputSink sink = new OutputSink(parameters.getOutputDirectory().get().getAsFile().toPath());
+        final long start = System.nanoTime();
+
+        try {
+            final Schema schema = Schema.readFrom(parameters.getSchemaFile().get().getAsFile().toPath());
+            final KotlinGenerator generator = new KotlinGenerator(schema, parameters.getPackageName().get(), parameters.getIsComposeEnabled().getOrElse(false), parameters.getKotlinShardSize().get());
+
+            switch (parameters.getTarget().get()) {
+                case Common: {
+                    generator.generateDefaultFormatter(sink);
+
+                    generator.generateCommonKotlin(sink, false, false);
+                    if (parameters.getIsComposeEnabled().getOrElse(false)) {
+                        generator.generateCommonKotlin(sink, true, parameters.getComposeMode().get() == ComposeMode.Stable);
+                    }
+
+                    generator.generateCommonExpectKotlin(sink);
+                    break;
+                }
+                case Jvm: {
+                    final boolean isFormatPrecompiled = parameters.getJvmTemplatesFile().isPresent();
+                    if (parameters.getJvmBackend().get() == JvmBackend.StringTable) {
+                        generator.generateJvmStringTableKotlin(sink, isFormatPrecompiled, parameters.getJvmInstanceCacheSize().get());
+                    } else {
+                        generator.generateJvmKotlin(sink, isFormatPrecompiled, parameters.getJvmInstanceCacheSize().get());
+                    }
+
+                    if (isFormatPrecompiled) {
+                        generator.generateJvmFormatsKotlin(sink, LocalizedTemplates.load(parameters.getJvmTemplatesFile().get().getAsFile().toPath()));
+                    }
+                    break;
+                }
+                case Android: {
+                    generator.generateAndroidKotlin(sink, parameters.getAndroidBackend().get() == AndroidBackend.CachedResources);
+                    break;
+                }
+            }
+
+            // Each target owns its output directory exclusively.
+            sink.sweep();
+
+            Metrics.writeDuration(parameters.getDurationFile().get().getAsFile().toPath(), System.nanoTime() - start);
+        } catch (final Exception e) {
+            throw new GradleException("Generate " + parameters.getTarget().get() + " kotlin failed", e);
+        }
+    }
+
+    public enum Target {
+        Common, Jvm, Android
+    }
+
+    public interface Parameters extends WorkParameters {
+        Property<Target> getTarget();
+
+        Property<String> getPackageName();
+
+        Property<Boolean> getIsComposeEnabled();
+
+        Property<ComposeMode> getComposeMode();
+
+        Property<JvmBackend> getJvmBackend();
+
+        Property<Integer> getJvmInstanceCacheSize();
+
+        Property<AndroidBackend> getAndroidBackend();
+
+        Property<Integer> getKotlinShardSize();
+
+        RegularFileProperty getSchemaFile();
+
+        RegularFileProperty getJvmTemplatesFile();
+
+        DirectoryProperty getOutputDirectory();
+
+        RegularFileProperty getDurationFile();
+    }
+}
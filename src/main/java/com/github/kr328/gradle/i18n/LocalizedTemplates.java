@@ -0,0 +1,59 @@
+package com.github.kr328.gradle.i18n;
+
+import lombok.Data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Root and per language templates keyed by jvm language tag, handed from resource generation to kotlin generation.
+@Data
+public final class LocalizedTemplates {
+    private final FlattenTemplates root;
+    private final Map<String, FlattenTemplates> languages;
+    // Languages hold only translated keys and resolve the others through parent locales, as sparse bundles do.
+    private final boolean sparse;
+
+    public static LocalizedTemplates load(final Path path) throws IOException {
+        try (final InputStream stream = Files.newInputStream(path); final DataInputStream input = new DataInputStream(new BufferedInputStream(stream))) {
+            final FlattenTemplates.Interner interner = new FlattenTemplates.Interner();
+            final boolean sparse = input.readBoolean();
+            final FlattenTemplates root = TemplatesCodec.read(input, interner);
+
+            final int count = input.readInt();
+            final TreeMap<String, FlattenTemplates> languages = new TreeMap<>();
+            for (int i = 0; i < count; i++) {
+                final String tag = TemplatesCodec.readString(input);
+                languages.put(tag, TemplatesCodec.read(input, interner));
+            }
+
+            return new LocalizedTemplates(root, languages, sparse);
+        }
+    }
+
+    // Languages are written in tag order, so equal templates always give the same bytes and the file is only rewritten on change.
+    public boolean save(final Path path) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (final DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeBoolean(sparse);
+            TemplatesCodec.write(output, root);
+
+            final TreeMap<String, FlattenTemplates> sorted = new TreeMap<>(languages);
+            output.writeInt(sorted.size());
+            for (final Map.Entry<String, FlattenTemplates> language : sorted.entrySet()) {
+                TemplatesCodec.writeString(output, language.getKey());
+                TemplatesCodec.write(output, language.getValue());
+            }
+        }
+
+        return new OutputSink(path.getParent()).write(path.getFileName().toString(), bytes.toByteArray());
+    }
+}
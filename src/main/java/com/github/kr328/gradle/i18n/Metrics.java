@@ -0,0 +1,153 @@
+package com.github.kr328.gradle.i18n;
+
+import org.gradle.api.logging.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Phase durations and counts of one task execution, logged at info and written as a JSON report.
+public final class Metrics {
+    private final String task;
+    private final long start = System.nanoTime();
+    private final List<Entry> phases = new ArrayList<>();
+    private final List<Entry> outputs = new ArrayList<>();
+
+    public Metrics(final String task) {
+        this.task = task;
+    }
+
+    public static long millis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    // Duration of a work item, written by the worker for the task to collect after the queue is drained.
+    public static void writeDuration(final Path path, final long nanos) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, Long.toString(nanos), StandardCharsets.US_ASCII);
+    }
+
+    public static long readDuration(final Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return -1;
+        }
+
+        return Long.parseLong(Files.readString(path, StandardCharsets.US_ASCII).trim());
+    }
+
+    public static int countVariables(final Iterable<Template> templates) {
+        int count = 0;
+        for (final Template template : templates) {
+            count += template.getVariables().size();
+        }
+        return count;
+    }
+
+    // Records a phase that started at startNanos and ends now.
+    public Entry phase(final String name, final long startNanos) {
+        final Entry entry = new Entry(name, System.nanoTime() - startNanos);
+        phases.add(entry);
+        return entry;
+    }
+
+    public Entry output(final String file, final long nanos) {
+        final Entry entry = new Entry(file, nanos);
+        outputs.add(entry);
+        return entry;
+    }
+
+    public void log(final Logger logger) {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+
+        for (final Entry phase : phases) {
+            logger.info("{} phase {}: {}", task, phase.name, phase.describe());
+        }
+        for (final Entry output : outputs) {
+            logger.info("{} output {}: {}", task, output.name, output.describe());
+        }
+        logger.info("{} total: {} ms", task, millis(System.nanoTime() - start));
+    }
+
+    public void write(final Path path) throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("{\n");
+        builder.append("  \"task\": ").append(quote(task)).append(",\n");
+        builder.append("  \"totalMillis\": ").append(millis(System.nanoTime() - start)).append(",\n");
+        builder.append("  \"phases\": ");
+        appendEntries(builder, phases, "name");
+        builder.append(",\n");
+        builder.append("  \"outputs\": ");
+        appendEntries(builder, outputs, "file");
+        builder.append("\n}\n");
+
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, builder, StandardCharsets.UTF_8);
+    }
+
+    private static void appendEntries(final StringBuilder builder, final List<Entry> entries, final String nameKey) {
+        builder.append('[');
+        for (int i = 0; i < entries.size(); i++) {
+            builder.append(i == 0 ? "\n    " : ",\n    ").append('{');
+            builder.append(quote(nameKey)).append(": ").append(quote(entries.get(i).name)).append(", ");
+            builder.append("\"millis\": ").append(entries.get(i).nanos < 0 ? -1 : millis(entries.get(i).nanos));
+            for (final Map.Entry<String, Object> count : entries.get(i).counts.entrySet()) {
+                builder.append(", ").append(quote(count.getKey())).append(": ");
+                if (count.getValue() instanceof Number) {
+                    builder.append(count.getValue());
+                } else {
+                    builder.append(quote(String.valueOf(count.getValue())));
+                }
+            }
+            builder.append('}');
+        }
+        builder.append(entries.isEmpty() ? "]" : "\n  ]");
+    }
+
+    private static String quote(final String text) {
+        final StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    public static final class Entry {
+        private final String name;
+        private final long nanos;
+        private final Map<String, Object> counts = new LinkedHashMap<>();
+
+        private Entry(final String name, final long nanos) {
+            this.name = name;
+            this.nanos = nanos;
+        }
+
+        public Entry count(final String key, final Object value) {
+            counts.put(key, value);
+            return this;
+        }
+
+        private String describe() {
+            final StringBuilder builder = new StringBuilder();
+            builder.append(nanos < 0 ? "-" : Long.toString(millis(nanos))).append(" ms");
+            for (final Map.Entry<String, Object> count : counts.entrySet()) {
+                builder.append(", ").append(count.getKey()).append('=').append(count.getValue());
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -4,23 +4,88 @@ import com.squareup.kotlinpoet.ClassName;
 import com.squareup.kotlinpoet.ParameterizedTypeName;
 import com.squareup.kotlinpoet.TypeName;
 
+import java.util.List;
+
 public final class Naming {
     public static final String I18N_IMPL_CLASS_NAME = "I18nImpl";
     public static final String I18N_CLASS_NAME = "I18n";
     public static final String I18N_COMPOSABLE_CLASS_NAME = "I18nComposable";
+    public static final String I18N_FORMATS_CLASS_NAME = "I18nFormats";
 
     public static final String JVM_RESOURCE_BUNDLE_NAME = "i18n";
+    public static final String JVM_STRING_TABLE_EXTENSION = ".table";
 
     public static String implFunctionName(final FlattenTemplates.Key key) {
-        return String.join("_", key.getNames());
+        return key.join("_");
+    }
+
+    public static String implShardName(final String container, final int part) {
+        final String name = container == null ? I18N_IMPL_CLASS_NAME + "Values" : I18N_IMPL_CLASS_NAME + "_" + container;
+        if (part == 0) {
+            return name;
+        }
+        return name + "_" + (part + 1);
     }
 
     public static String jvmResourceKey(final FlattenTemplates.Key key) {
-        return "i18n." + String.join(".", key.getNames());
+        return "i18n." + key.join(".");
     }
 
     public static String androidResourceKey(final FlattenTemplates.Key key) {
-        return "i18n_" + String.join("_", key.getNames());
+        return "i18n_" + key.join("_");
+    }
+
+    public static String jvmResourceFile(final String packageName, final String languageTag) {
+        final String directory = packageName.replace('.', '/');
+        if (languageTag == null) {
+            return directory + "/" + JVM_RESOURCE_BUNDLE_NAME + ".properties";
+        }
+        return directory + "/" + JVM_RESOURCE_BUNDLE_NAME + "_" + languageTag + ".properties";
+    }
+
+    public static String jvmStringTableBaseName(final String packageName) {
+        return "/" + packageName.replace('.', '/') + "/" + JVM_RESOURCE_BUNDLE_NAME;
+    }
+
+    public static String jvmStringTableFile(final String packageName, final String languageTag) {
+        final String directory = packageName.replace('.', '/');
+        if (languageTag == null) {
+            return directory + "/" + JVM_RESOURCE_BUNDLE_NAME + JVM_STRING_TABLE_EXTENSION;
+        }
+        return directory + "/" + JVM_RESOURCE_BUNDLE_NAME + "_" + languageTag + JVM_STRING_TABLE_EXTENSION;
+    }
+
+    // Parent bundle tag in ResourceBundle lookup order, zh_TW to zh, null for a bare language.
+    public static String parentLanguageTag(final String languageTag) {
+        final int index = languageTag.lastIndexOf('_');
+        return index < 0 ? null : languageTag.substring(0, index);
+    }
+
+    public static String formatsClassName(final String languageTag) {
+        return I18N_FORMATS_CLASS_NAME + "_" + languageTag.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    public static String androidResourceFile(final String languageTag) {
+        if (languageTag == null) {
+            return "values/strings.xml";
+        }
+        return "values-" + languageTag + "/strings.xml";
+    }
+
+    private static String signatureFunctionName(final String prefix, final List<Schema.Variable> variables) {
+        final StringBuilder builder = new StringBuilder(prefix).append(variables.size());
+        for (final Schema.Variable variable : variables) {
+            builder.append(variable.getType().signatureCode());
+        }
+        return builder.toString();
+    }
+
+    public static String formatterFunctionName(final List<Schema.Variable> variables) {
+        return signatureFunctionName("format", variables);
+    }
+
+    public static String directFormatterFunctionName(final List<Schema.Variable> variables) {
+        return signatureFunctionName("formatDirect", variables);
     }
 
     public static TypeName formatterName(final String packageName, final TypeName returnType) {
@@ -0,0 +1,179 @@
+package com.github.kr328.gradle.i18n;
+
+import com.squareup.kotlinpoet.FileSpec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class OutputSink {
+    private final Path root;
+    private final Set<Path> produced = ConcurrentHashMap.newKeySet();
+
+    public OutputSink(final Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public boolean write(final String relativePath, final byte[] content) throws IOException {
+        final Path path = root.resolve(relativePath).normalize();
+        produced.add(path);
+
+        if (Files.isRegularFile(path) && Files.size(path) == content.length) {
+            if (Arrays.equals(Files.readAllBytes(path), content)) {
+                return false;
+            }
+        }
+
+        Files.createDirectories(path.getParent());
+        Files.write(path, content);
+
+        return true;
+    }
+
+    public boolean write(final String relativePath, final CharSequence content, final Charset charset) throws IOException {
+        return write(relativePath, content.toString().getBytes(charset));
+    }
+
+    // Streams content into a temporary file, see StagedWriter.
+    public StagedWriter openWriter(final String relativePath, final Charset charset) throws IOException {
+        final Path path = root.resolve(relativePath).normalize();
+        produced.add(path);
+
+        Files.createDirectories(path.getParent());
+
+        final Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        return new StagedWriter(path, temp, charset);
+    }
+
+    // Replaces the target on commit() only if contents differ, closing without commit keeps the previous target intact.
+    public static final class StagedWriter extends BufferedWriter {
+        private final Path path;
+        private final Path temp;
+        private boolean closed = false;
+
+        private StagedWriter(final Path path, final Path temp, final Charset charset) throws IOException {
+            super(new OutputStreamWriter(Files.newOutputStream(temp), charset.newEncoder()));
+
+            this.path = path;
+            this.temp = temp;
+        }
+
+        public void commit() throws IOException {
+            if (closed) {
+                throw new IOException("Writer of " + path + " already closed");
+            }
+            closed = true;
+
+            try {
+                super.close();
+
+                if (!isSameContent(path, temp)) {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            try {
+                super.close();
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private static boolean isSameContent(final Path a, final Path b) throws IOException {
+        if (!Files.isRegularFile(a) || Files.size(a) != Files.size(b)) {
+            return false;
+        }
+
+        try (final InputStream streamA = new BufferedInputStream(Files.newInputStream(a)); final InputStream streamB = new BufferedInputStream(Files.newInputStream(b))) {
+            int value;
+            do {
+                value = streamA.read();
+                if (value != streamB.read()) {
+                    return false;
+                }
+            } while (value >= 0);
+        }
+
+        return true;
+    }
+
+    public boolean writeKotlin(final FileSpec spec) throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        spec.writeTo(builder);
+
+        final String relativePath;
+        if (spec.getPackageName().isEmpty()) {
+            relativePath = spec.getName() + ".kt";
+        } else {
+            relativePath = spec.getPackageName().replace('.', '/') + "/" + spec.getName() + ".kt";
+        }
+
+        return write(relativePath, builder, StandardCharsets.UTF_8);
+    }
+
+    public void retain(final String relativePath) {
+        produced.add(root.resolve(relativePath).normalize());
+    }
+
+    public void delete(final String relativePath) throws IOException {
+        final Path path = root.resolve(relativePath).normalize();
+        produced.remove(path);
+
+        Files.deleteIfExists(path);
+    }
+
+    // Removes every file under root that was neither written nor retained through this sink.
+    public void sweep() throws IOException {
+        if (Files.isDirectory(root)) {
+            sweep(root);
+        }
+    }
+
+    private boolean sweep(final Path directory) throws IOException {
+        boolean empty = true;
+
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (final Path file : files) {
+                if (Files.isDirectory(file)) {
+                    if (sweep(file)) {
+                        Files.delete(file);
+                    } else {
+                        empty = false;
+                    }
+                } else if (!produced.contains(file.toAbsolutePath().normalize())) {
+                    Files.delete(file);
+                } else {
+                    empty = false;
+                }
+            }
+        }
+
+        return empty;
+    }
+}
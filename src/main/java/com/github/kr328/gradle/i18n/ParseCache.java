@@ -0,0 +1,129 @@
+package com.github.kr328.gradle.i18n;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Parsed templates of source files, stored per file content hash so unchanged files skip yaml and template parsing.
+public final class ParseCache {
+    private static final int MAGIC = 0x4931384e; // I18N
+    private static final int FORMAT_VERSION = 1;
+    private static final String EXTENSION = ".bin";
+
+    private final Path directory;
+    private final String pluginVersion;
+    private final Set<String> used = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger hits = new AtomicInteger();
+
+    public ParseCache(final Path directory, final String pluginVersion) {
+        this.directory = directory;
+        this.pluginVersion = pluginVersion;
+    }
+
+    private static String hash(final byte[] content) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final StringBuilder builder = new StringBuilder();
+        for (final byte b : digest.digest(content)) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    public FlattenTemplates parseFile(final Path path) throws IOException, ProcessorException {
+        return parseFile(path, new FlattenTemplates.Interner());
+    }
+
+    public FlattenTemplates parseFile(final Path path, final FlattenTemplates.Interner interner) throws IOException, ProcessorException {
+        final byte[] content = Files.readAllBytes(path);
+        final String hash = hash(content);
+        final Path entry = directory.resolve(hash + EXTENSION);
+
+        used.add(hash);
+
+        if (Files.exists(entry)) {
+            final FlattenTemplates cached = read(entry, interner);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        final FlattenTemplates templates = Parser.parse(new ByteArrayInputStream(content), path, interner);
+
+        write(entry, templates);
+
+        return templates;
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    // Removes entries of source files that were not parsed through this cache.
+    public void prune() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (final Path file : files) {
+                final String name = file.getFileName().toString();
+                if (!used.contains(name.substring(0, name.length() - EXTENSION.length()))) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private FlattenTemplates read(final Path entry, final FlattenTemplates.Interner interner) {
+        try (final InputStream stream = Files.newInputStream(entry); final DataInputStream input = new DataInputStream(new BufferedInputStream(stream))) {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION || !pluginVersion.equals(TemplatesCodec.readString(input))) {
+                return null;
+            }
+
+            return TemplatesCodec.read(input, interner);
+        } catch (final IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void write(final Path entry, final FlattenTemplates templates) throws IOException {
+        Files.createDirectories(directory);
+
+        // Identical files may be parsed concurrently, publish complete entries only.
+        final Path temp = Files.createTempFile(directory, "entry", ".tmp");
+        try {
+            try (final OutputStream stream = Files.newOutputStream(temp); final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                TemplatesCodec.writeString(output, pluginVersion);
+
+                TemplatesCodec.write(output, templates);
+            }
+
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
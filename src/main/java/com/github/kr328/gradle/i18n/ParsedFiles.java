@@ -0,0 +1,69 @@
+package com.github.kr328.gradle.i18n;
+
+import lombok.Data;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Data
+public final class ParsedFiles implements Serializable {
+    private final Map<String, Map<String, FlattenTemplates>> groups;
+
+    public ParsedFiles() {
+        this.groups = new TreeMap<>();
+    }
+
+    @Nullable
+    public static ParsedFiles load(final Path path) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try (final InputStream stream = Files.newInputStream(path); final ObjectInputStream input = new ObjectInputStream(stream)) {
+            return (ParsedFiles) input.readObject();
+        } catch (final IOException | ClassNotFoundException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    public void save(final Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+
+        try (final OutputStream stream = Files.newOutputStream(path); final ObjectOutputStream output = new ObjectOutputStream(stream)) {
+            output.writeObject(this);
+        }
+    }
+
+    public void put(final String group, final String file, final FlattenTemplates templates) {
+        groups.computeIfAbsent(group, (_k) -> new TreeMap<>()).put(file, templates);
+    }
+
+    public void remove(final String group, final String file) {
+        final Map<String, FlattenTemplates> files = groups.get(group);
+        if (files == null) {
+            return;
+        }
+
+        files.remove(file);
+        if (files.isEmpty()) {
+            groups.remove(group);
+        }
+    }
+
+    public boolean contains(final String group) {
+        return groups.containsKey(group);
+    }
+
+    public FlattenTemplates merge(final String group) throws ProcessorException {
+        return Parser.merge(groups.getOrDefault(group, Map.of()).values());
+    }
+}
@@ -3,88 +3,412 @@ package com.github.kr328.gradle.i18n;
 import org.yaml.snakeyaml.LoaderOptions;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionEndEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+import org.yaml.snakeyaml.resolver.Resolver;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigInteger;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Stack;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public final class Parser {
-    private static final Yaml YAML = new Yaml(new SafeConstructor(new LoaderOptions()));
+    // Yaml instances keep construction state and are not thread safe.
+    private static final ThreadLocal<Yaml> YAML = ThreadLocal.withInitial(() -> new Yaml(new SafeConstructor(new LoaderOptions())));
+    private static final Resolver RESOLVER = new Resolver();
     private static final String ROOT_ELEMENT = "strings";
 
-    private static void parseObjectInto(
-            final Stack<String> context,
+    private static Tag resolveTag(final ScalarEvent event) {
+        if (event.getTag() == null || event.getTag().equals("!")) {
+            return RESOLVER.resolve(NodeId.scalar, event.getValue(), event.getImplicit().canOmitTagInPlainScalar());
+        }
+
+        return new Tag(event.getTag());
+    }
+
+    private static boolean isKeyName(final String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '_')) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String parseKey(final Event event) throws ProcessorException {
+        if (!(event instanceof ScalarEvent) || !Tag.STR.equals(resolveTag((ScalarEvent) event))) {
+            throw new ProcessorException("Unexpected key: " + describe(event));
+        }
+
+        final String keyText = ((ScalarEvent) event).getValue();
+        if (!isKeyName(keyText)) {
+            throw new ProcessorException("Unexpected key: " + keyText);
+        }
+
+        return keyText;
+    }
+
+    // Numbers are kept in the form SafeConstructor would produce: 0x10, 020 and 0b10000 are 16, 1_000 is 1000, 1:30 is 90.
+    private static String resolveInt(final String text) {
+        String value = text.replace("_", "");
+        String sign = "";
+        if (value.startsWith("-")) {
+            sign = "-";
+            value = value.substring(1);
+        } else if (value.startsWith("+")) {
+            value = value.substring(1);
+        }
+
+        if (value.equals("0")) {
+            return "0";
+        } else if (value.startsWith("0b")) {
+            return new BigInteger(sign + value.substring(2), 2).toString();
+        } else if (value.startsWith("0x")) {
+            return new BigInteger(sign + value.substring(2), 16).toString();
+        } else if (value.startsWith("0")) {
+            return new BigInteger(sign + value.substring(1), 8).toString();
+        } else if (value.indexOf(':') >= 0) {
+            BigInteger result = BigInteger.ZERO;
+            for (final String digit : value.split(":")) {
+                result = result.multiply(BigInteger.valueOf(60)).add(new BigInteger(digit));
+            }
+            return sign + result;
+        }
+
+        return new BigInteger(sign + value).toString();
+    }
+
+    private static String resolveFloat(final String text) {
+        final String value = text.replace("_", "");
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case ".inf":
+            case "+.inf": {
+                return String.valueOf(Double.POSITIVE_INFINITY);
+            }
+            case "-.inf": {
+                return String.valueOf(Double.NEGATIVE_INFINITY);
+            }
+            case ".nan": {
+                return String.valueOf(Double.NaN);
+            }
+        }
+
+        if (value.indexOf(':') >= 0) {
+            double sign = 1;
+            String digits = value;
+            if (digits.startsWith("-")) {
+                sign = -1;
+                digits = digits.substring(1);
+            } else if (digits.startsWith("+")) {
+                digits = digits.substring(1);
+            }
+
+            // Summed from the last digit like SafeConstructor, so rounding matches.
+            final String[] parts = digits.split(":");
+            double result = 0;
+            double base = 1;
+            for (int i = parts.length - 1; i >= 0; i--) {
+                result += Double.parseDouble(parts[i]) * base;
+                base *= 60;
+            }
+            return String.valueOf(sign * result);
+        }
+
+        return String.valueOf(Double.parseDouble(value));
+    }
+
+    private static String parseValue(final Event event, final Map<String, String> anchors) throws ProcessorException {
+        if (event instanceof AliasEvent) {
+            final String value = anchors.get(((AliasEvent) event).getAnchor());
+            if (value == null) {
+                throw new ProcessorException("Unsupported value: *" + ((AliasEvent) event).getAnchor());
+            }
+
+            return value;
+        }
+
+        if (!(event instanceof ScalarEvent)) {
+            throw new ProcessorException("Unsupported value: " + describe(event));
+        }
+
+        final ScalarEvent scalar = (ScalarEvent) event;
+        final Tag tag = resolveTag(scalar);
+
+        final String value;
+        if (Tag.STR.equals(tag)) {
+            value = scalar.getValue();
+        } else if (Tag.INT.equals(tag) || Tag.FLOAT.equals(tag)) {
+            try {
+                value = Tag.INT.equals(tag) ? resolveInt(scalar.getValue()) : resolveFloat(scalar.getValue());
+            } catch (final NumberFormatException e) {
+                throw new ProcessorException("Unsupported value: " + scalar.getValue() + " of " + tag, e);
+            }
+        } else {
+            throw new ProcessorException("Unsupported value: " + scalar.getValue() + " of " + tag);
+        }
+
+        if (scalar.getAnchor() != null) {
+            anchors.put(scalar.getAnchor(), value);
+        }
+
+        return value;
+    }
+
+    private static String describe(final Event event) {
+        if (event instanceof ScalarEvent) {
+            return ((ScalarEvent) event).getValue();
+        }
+
+        return event.getEventId() + " at " + event.getStartMark();
+    }
+
+    private static void skipValue(final Iterator<Event> events) {
+        int depth = 0;
+        do {
+            final Event event = events.next();
+            if (event instanceof CollectionStartEvent) {
+                depth++;
+            } else if (event instanceof CollectionEndEvent) {
+                depth--;
+            }
+        } while (depth > 0);
+    }
+
+    private static void parseMappingInto(
+            final Iterator<Event> events,
+            final FlattenTemplates.Key context,
             final Map<FlattenTemplates.Key, Template> output,
-            final Map<?, ?> object
+            final Map<String, String> anchors,
+            final Path path,
+            final FlattenTemplates.Interner interner
     ) throws ProcessorException {
-        for (final Object key : object.keySet()) {
-            if (!(key instanceof String)) {
-                throw new ProcessorException("Unexpected key: " + key);
-            }
+        final Set<String> keys = new HashSet<>();
 
-            final String keyText = (String) key;
-            if (!keyText.matches("[a-z_0-9]+")) {
-                throw new ProcessorException("Unexpected key: " + key);
+        while (true) {
+            final Event keyEvent = events.next();
+            if (keyEvent instanceof MappingEndEvent) {
+                return;
             }
 
-            context.push(keyText);
+            final FlattenTemplates.Key key;
             try {
-                final Object value = object.get(keyText);
-                if (value instanceof Map<?, ?>) {
-                    parseObjectInto(context, output, (Map<?, ?>) value);
-                } else if (value instanceof String || value instanceof Number) {
-                    output.put(new FlattenTemplates.Key(new ArrayList<>(context)), Template.parse(value.toString()));
-                } else {
-                    throw new ProcessorException("Unsupported value: " + value);
+                key = interner.child(context, parseKey(keyEvent));
+            } catch (final ProcessorException e) {
+                throw new ProcessorException(e.getMessage() + " in " + path.toAbsolutePath(), e.getCause());
+            }
+
+            if (!keys.add(key.getName())) {
+                throw new ProcessorException("Duplicate key " + key + " in " + path.toAbsolutePath());
+            }
+
+            final Event value = events.next();
+            if (value instanceof MappingStartEvent) {
+                parseMappingInto(events, key, output, anchors, path, interner);
+            } else {
+                // Files are parsed in parallel, so template errors carry their file and key.
+                try {
+                    output.put(key, Template.parse(parseValue(value, anchors)));
+                } catch (final ProcessorException e) {
+                    throw new ProcessorException(e.getMessage() + " of key " + key + " in " + path.toAbsolutePath(), e.getCause());
                 }
-            } finally {
-                context.pop();
             }
         }
     }
 
     public static FlattenTemplates parseFile(final Path path) throws IOException, ProcessorException {
+        return parseFile(path, new FlattenTemplates.Interner());
+    }
+
+    public static FlattenTemplates parseFile(final Path path, final FlattenTemplates.Interner interner) throws IOException, ProcessorException {
         try (final InputStream input = Files.newInputStream(path)) {
-            final Map<?, ?> yaml = YAML.load(input);
+            return parse(input, path, interner);
+        }
+    }
 
-            if (yaml.size() != 1) {
-                throw new ProcessorException("Expected 1 element in file " + path.toAbsolutePath() + " but got " + yaml.size());
-            }
+    public static FlattenTemplates parse(final InputStream input, final Path path, final FlattenTemplates.Interner interner) throws ProcessorException {
+        try {
+            return parseEvents(YAML.get().parse(new UnicodeReader(input)).iterator(), path, interner);
+        } catch (final YAMLException e) {
+            throw new ProcessorException("Invalid yaml in " + path.toAbsolutePath() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static FlattenTemplates parseEvents(final Iterator<Event> events, final Path path, final FlattenTemplates.Interner interner) throws ProcessorException {
+        final LinkedHashMap<FlattenTemplates.Key, Template> templates = new LinkedHashMap<>();
+
+        // StreamStart, then either StreamEnd for an empty file or DocumentStart.
+        events.next();
+        if (!(events.next() instanceof DocumentStartEvent)) {
+            throw new ProcessorException("Expected 1 element in file " + path.toAbsolutePath() + " but got 0");
+        }
+
+        if (!(events.next() instanceof MappingStartEvent)) {
+            throw new ProcessorException("Root element " + ROOT_ELEMENT + " not found in " + path.toAbsolutePath());
+        }
 
-            if (!(yaml.get(ROOT_ELEMENT) instanceof Map<?, ?>)) {
-                throw new ProcessorException("Root element " + ROOT_ELEMENT + " not found in " + path.toAbsolutePath());
+        int elements = 0;
+        boolean found = false;
+        for (Event event = events.next(); !(event instanceof MappingEndEvent); event = events.next()) {
+            elements++;
+
+            if (ROOT_ELEMENT.equals(parseKey(event)) && !found) {
+                if (!(events.next() instanceof MappingStartEvent)) {
+                    throw new ProcessorException("Root element " + ROOT_ELEMENT + " not found in " + path.toAbsolutePath());
+                }
+
+                parseMappingInto(events, null, templates, new HashMap<>(), path, interner);
+
+                found = true;
+            } else {
+                skipValue(events);
             }
+        }
 
-            final LinkedHashMap<FlattenTemplates.Key, Template> templates = new LinkedHashMap<>();
+        if (elements != 1) {
+            throw new ProcessorException("Expected 1 element in file " + path.toAbsolutePath() + " but got " + elements);
+        }
 
-            parseObjectInto(new Stack<>(), templates, (Map<?, ?>) yaml.get(ROOT_ELEMENT));
+        if (!found) {
+            throw new ProcessorException("Root element " + ROOT_ELEMENT + " not found in " + path.toAbsolutePath());
+        }
 
-            return new FlattenTemplates(templates);
+        events.next();
+        if (!(events.next() instanceof StreamEndEvent)) {
+            throw new ProcessorException("Expected single document in file " + path.toAbsolutePath());
         }
+
+        return new FlattenTemplates(templates);
     }
 
-    public static FlattenTemplates parseDirectory(final Path path) throws IOException, ProcessorException {
-        try (final DirectoryStream<Path> files = Files.newDirectoryStream(path)) {
-            final FlattenTemplates result = new FlattenTemplates(new LinkedHashMap<>());
+    private static FlattenTemplates parseFile(final Path path, final ParseCache cache, final FlattenTemplates.Interner interner) throws IOException, ProcessorException {
+        if (cache != null) {
+            return cache.parseFile(path, interner);
+        }
+
+        return parseFile(path, interner);
+    }
+
+    public static List<FlattenTemplates> parseFiles(final List<Path> files, final int parallelism) throws IOException, ProcessorException {
+        return parseFiles(files, parallelism, null);
+    }
 
+    // Files are parsed on at most parallelism threads, callers pass the build's worker limit.
+    public static List<FlattenTemplates> parseFiles(final List<Path> files, final int parallelism, final ParseCache cache) throws IOException, ProcessorException {
+        final List<FlattenTemplates> results = new ArrayList<>(files.size());
+        final FlattenTemplates.Interner interner = new FlattenTemplates.Interner();
+
+        if (parallelism < 2 || files.size() < 2) {
+            for (final Path file : files) {
+                results.add(parseFile(file, cache, interner));
+            }
+
+            return results;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, files.size()));
+        try {
+            final List<Future<FlattenTemplates>> tasks = new ArrayList<>(files.size());
             for (final Path file : files) {
-                final FlattenTemplates current = parseFile(file);
-                for (final FlattenTemplates.Key key : current.getTemplates().keySet()) {
-                    if (result.getTemplates().containsKey(key)) {
-                        throw new ProcessorException("Duplicate key " + key);
+                tasks.add(executor.submit(() -> parseFile(file, cache, interner)));
+            }
+
+            for (final Future<FlattenTemplates> task : tasks) {
+                try {
+                    results.add(task.get());
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                    throw new IOException("Interrupted while parsing", e);
+                } catch (final ExecutionException e) {
+                    // Futures of an executor keep the exception thrown by the callable as is.
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof ProcessorException) {
+                        throw (ProcessorException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
                     }
+
+                    throw new IOException(cause);
                 }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return results;
+    }
+
+    public static FlattenTemplates merge(final Collection<FlattenTemplates> parts) throws ProcessorException {
+        final LinkedHashMap<FlattenTemplates.Key, Template> templates = new LinkedHashMap<>();
 
-                result.getTemplates().putAll(current.getTemplates());
+        for (final FlattenTemplates current : parts) {
+            for (final Map.Entry<FlattenTemplates.Key, Template> entry : current.getTemplates().entrySet()) {
+                if (templates.putIfAbsent(entry.getKey(), entry.getValue()) != null) {
+                    throw new ProcessorException("Duplicate key " + entry.getKey());
+                }
             }
+        }
+
+        return new FlattenTemplates(templates);
+    }
 
-            return result;
+    public static List<Path> listFiles(final Path path) throws IOException {
+        final List<Path> sortedFiles = new ArrayList<>();
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(path)) {
+            for (final Path file : files) {
+                sortedFiles.add(file);
+            }
         }
+
+        // Directory listing order is file system dependent, keep keys in a stable order.
+        sortedFiles.sort(Comparator.comparing(p -> p.getFileName().toString()));
+
+        return sortedFiles;
+    }
+
+    public static FlattenTemplates parseDirectory(final Path path) throws IOException, ProcessorException {
+        return parseDirectory(path, 1);
+    }
+
+    public static FlattenTemplates parseDirectory(final Path path, final int parallelism) throws IOException, ProcessorException {
+        return merge(parseFiles(listFiles(path), parallelism));
     }
 }
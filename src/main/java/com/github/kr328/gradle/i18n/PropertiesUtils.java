@@ -0,0 +1,74 @@
+package com.github.kr328.gradle.i18n;
+
+import java.io.IOException;
+import java.io.Writer;
+
+public final class PropertiesUtils {
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    // Same escaping as java.util.Properties#store, so the output stays readable by ResourceBundle.
+    public static void escape(final Writer writer, final String text, final boolean escapeSpace) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c > 61 && c < 127) {
+                if (c == '\\') {
+                    writer.write('\\');
+                    writer.write('\\');
+                } else {
+                    writer.write(c);
+                }
+                continue;
+            }
+
+            switch (c) {
+                case ' ':
+                    if (i == 0 || escapeSpace) {
+                        writer.write('\\');
+                    }
+                    writer.write(' ');
+                    break;
+                case '\t':
+                    writer.write('\\');
+                    writer.write('t');
+                    break;
+                case '\n':
+                    writer.write('\\');
+                    writer.write('n');
+                    break;
+                case '\r':
+                    writer.write('\\');
+                    writer.write('r');
+                    break;
+                case '\f':
+                    writer.write('\\');
+                    writer.write('f');
+                    break;
+                case '=':
+                case ':':
+                case '#':
+                case '!':
+                    writer.write('\\');
+                    writer.write(c);
+                    break;
+                default:
+                    if (c < 0x0020 || c > 0x007e) {
+                        writer.write('\\');
+                        writer.write('u');
+                        writer.write(HEX_DIGITS[(c >> 12) & 0xF]);
+                        writer.write(HEX_DIGITS[(c >> 8) & 0xF]);
+                        writer.write(HEX_DIGITS[(c >> 4) & 0xF]);
+                        writer.write(HEX_DIGITS[c & 0xF]);
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+    }
+
+    public static void writeEntry(final Writer writer, final String key, final String value) throws IOException {
+        escape(writer, key, true);
+        writer.write('=');
+        escape(writer, value, false);
+        writer.write('\n');
+    }
+}
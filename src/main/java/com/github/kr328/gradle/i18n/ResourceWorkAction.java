@@ -0,0 +1,73 @@
+package com.github.kr328.gradle.i18n;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+public abstract class ResourceWorkAction implements WorkAction<ResourceWorkAction.Parameters> {
+    @Override
+    public void execute() {
+        final Parameters parameters = getParameters();
+        final OutputSink sink = new OutputSink(parameters.getOutputDirectory().get().getAsFile().toPath());
+        final String languageTag = parameters.getLanguageTag().getOrNull();
+        final long start = System.nanoTime();
+
+        try {
+            final FlattenTemplates.Interner interner = new FlattenTemplates.Interner();
+            final FlattenTemplates root = TemplatesCodec.load(parameters.getRootFile().get().getAsFile().toPath(), interner);
+            final FlattenTemplates templates;
+            if (parameters.getTemplatesFile().get().equals(parameters.getRootFile().get())) {
+                templates = root;
+            } else {
+                templates = TemplatesCodec.load(parameters.getTemplatesFile().get().getAsFile().toPath(), interner);
+            }
+
+            final Generator generator = new Generator(root, parameters.getPackageName().get());
+            switch (parameters.getTarget().get()) {
+                case Jvm: {
+                    generator.generateJvmResource(sink, languageTag, templates, parameters.getIsSparse().get());
+                    break;
+                }
+                case JvmStringTable: {
+                    final long savedBytes = generator.generateJvmStringTable(sink, languageTag, templates);
+                    Logging.getLogger(ResourceWorkAction.class).info("String table of {} shares duplicated texts, {} bytes saved", languageTag, savedBytes);
+                    break;
+                }
+                case Android: {
+                    generator.generateAndroidResource(sink, languageTag, templates, parameters.getIsSparse().get());
+                    break;
+                }
+            }
+
+            Metrics.writeDuration(parameters.getDurationFile().get().getAsFile().toPath(), System.nanoTime() - start);
+        } catch (final Exception e) {
+            throw new GradleException("Generate " + parameters.getTarget().get() + " resource of " + languageTag + " failed", e);
+        }
+    }
+
+    public enum Target {
+        Jvm, JvmStringTable, Android
+    }
+
+    public interface Parameters extends WorkParameters {
+        Property<Target> getTarget();
+
+        Property<String> getPackageName();
+
+        Property<String> getLanguageTag();
+
+        RegularFileProperty getRootFile();
+
+        RegularFileProperty getTemplatesFile();
+
+        Property<Boolean> getIsSparse();
+
+        DirectoryProperty getOutputDirectory();
+
+        RegularFileProperty getDurationFile();
+    }
+}
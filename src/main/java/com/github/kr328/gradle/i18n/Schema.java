@@ -0,0 +1,116 @@
+package com.github.kr328.gradle.i18n;
+
+import lombok.Data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public final class Schema {
+    private static final String PLAIN = "plain";
+
+    private final Map<FlattenTemplates.Key, List<Variable>> entries;
+
+    public static Schema createFrom(final FlattenTemplates templates) {
+        final LinkedHashMap<FlattenTemplates.Key, List<Variable>> entries = new LinkedHashMap<>();
+
+        for (final Map.Entry<FlattenTemplates.Key, Template> entry : templates.getTemplates().entrySet()) {
+            final List<Variable> variables = new ArrayList<>();
+            for (final Template.Part.Variable variable : entry.getValue().getVariables()) {
+                variables.add(new Variable(variable.getName(), variable.getType(), isPlain(variable)));
+            }
+
+            entries.put(entry.getKey(), variables);
+        }
+
+        return new Schema(entries);
+    }
+
+    // Bare %s, %d, %x and %o print like the argument appended as is, given ascii digits for %d.
+    private static boolean isPlain(final Template.Part.Variable variable) {
+        if (variable.getFormat().length() != 2) {
+            return false;
+        }
+
+        switch (variable.getType()) {
+            case String:
+            case Decimal:
+            case Octal:
+            case Hexadecimal: {
+                return true;
+            }
+            default: {
+                return false;
+            }
+        }
+    }
+
+    public static Schema readFrom(final Path path) throws IOException, ProcessorException {
+        final LinkedHashMap<FlattenTemplates.Key, List<Variable>> entries = new LinkedHashMap<>();
+        final FlattenTemplates.Interner interner = new FlattenTemplates.Interner();
+
+        try (final BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                final String[] segments = line.split(" ");
+                final FlattenTemplates.Key key = interner.of(Arrays.asList(segments[0].split("\\.")));
+                final List<Variable> variables = new ArrayList<>();
+                for (int i = 1; i < segments.length; i++) {
+                    final String[] fields = segments[i].split(":");
+                    if (fields.length < 2 || fields.length > 3 || fields.length == 3 && !PLAIN.equals(fields[2])) {
+                        throw new ProcessorException("Invalid schema variable " + segments[i] + " of " + key);
+                    }
+
+                    final Template.Part.Variable.FormatType type;
+                    try {
+                        type = Template.Part.Variable.FormatType.valueOf(fields[1]);
+                    } catch (final IllegalArgumentException e) {
+                        throw new ProcessorException("Invalid schema variable " + segments[i] + " of " + key, e);
+                    }
+
+                    variables.add(new Variable(fields[0], type, fields.length == 3));
+                }
+
+                entries.put(key, variables);
+            }
+        }
+
+        return new Schema(entries);
+    }
+
+    public boolean writeTo(final Path path) throws IOException {
+        final StringBuilder builder = new StringBuilder();
+
+        for (final Map.Entry<FlattenTemplates.Key, List<Variable>> entry : entries.entrySet()) {
+            builder.append(entry.getKey().join("."));
+            for (final Variable variable : entry.getValue()) {
+                builder.append(' ').append(variable.getName()).append(':').append(variable.getType().name());
+                if (variable.isPlain()) {
+                    builder.append(':').append(PLAIN);
+                }
+            }
+            builder.append('\n');
+        }
+
+        return new OutputSink(path.getParent()).write(path.getFileName().toString(), builder, StandardCharsets.UTF_8);
+    }
+
+    @Data
+    public static final class Variable {
+        private final String name;
+        private final Template.Part.Variable.FormatType type;
+        private final boolean plain;
+    }
+}
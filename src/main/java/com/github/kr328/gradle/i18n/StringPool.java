@@ -0,0 +1,36 @@
+package com.github.kr328.gradle.i18n;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Identical texts are stored once, indices follow first occurrence.
+public final class StringPool {
+    private final Map<String, Integer> indices = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private long savedBytes = 0;
+
+    public int intern(final String text) {
+        final Integer index = indices.get(text);
+        if (index != null) {
+            savedBytes += text.getBytes(StandardCharsets.UTF_8).length;
+            return index;
+        }
+
+        indices.put(text, strings.size());
+        strings.add(text);
+
+        return strings.size() - 1;
+    }
+
+    public List<String> getStrings() {
+        return strings;
+    }
+
+    // UTF-8 bytes of texts that resolved to an existing entry.
+    public long getSavedBytes() {
+        return savedBytes;
+    }
+}
@@ -4,15 +4,37 @@ import com.squareup.kotlinpoet.ClassName;
 import com.squareup.kotlinpoet.ClassNames;
 import com.squareup.kotlinpoet.MemberName;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormatSymbols;
 import java.util.Locale;
+import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class Symbols {
     public static final ClassName COMPOSABLE = new ClassName("androidx.compose.runtime", "Composable");
     public static final ClassName SUPPRESS = new ClassName("kotlin", "Suppress");
     public static final ClassName JVM_INLINE = new ClassName("kotlin.jvm", "JvmInline");
+    public static final ClassName VOLATILE = new ClassName("kotlin.jvm", "Volatile");
+    public static final ClassName STRING_BUILDER = new ClassName("kotlin.text", "StringBuilder");
     public static final ClassName RESOURCES = new ClassName("android.content.res", "Resources");
     public static final ClassName RESOURCE_BUNDLE = ClassNames.get(ResourceBundle.class);
+    public static final ClassName RESOURCE_BUNDLE_CONTROL = ClassNames.get(ResourceBundle.Control.class);
+    public static final ClassName MISSING_RESOURCE_EXCEPTION = ClassNames.get(MissingResourceException.class);
+    public static final ClassName BUFFER = ClassNames.get(Buffer.class);
+    public static final ClassName BYTE_BUFFER = ClassNames.get(ByteBuffer.class);
+    public static final ClassName FILE_CHANNEL = ClassNames.get(FileChannel.class);
+    public static final ClassName PATHS = ClassNames.get(Paths.class);
+    public static final ClassName STANDARD_OPEN_OPTION = ClassNames.get(StandardOpenOption.class);
+    public static final ClassName CONCURRENT_HASH_MAP = ClassNames.get(ConcurrentHashMap.class);
     public static final ClassName LOCALE = ClassNames.get(Locale.class);
+    public static final ClassName DECIMAL_FORMAT_SYMBOLS = ClassNames.get(DecimalFormatSymbols.class);
+    public static final ClassName IMMUTABLE = new ClassName("androidx.compose.runtime", "Immutable");
+    public static final ClassName PROVIDABLE_COMPOSITION_LOCAL = new ClassName("androidx.compose.runtime", "ProvidableCompositionLocal");
     public static final MemberName REMEMBER = new MemberName("androidx.compose.runtime", "remember", true);
+    public static final MemberName STATIC_COMPOSITION_LOCAL_OF = new MemberName("androidx.compose.runtime", "staticCompositionLocalOf", false);
 }
@@ -4,14 +4,22 @@ import com.squareup.kotlinpoet.TypeName;
 import com.squareup.kotlinpoet.TypeNames;
 import lombok.Data;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.IllegalFormatException;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Data
-public class Template {
+public class Template implements Serializable {
+    // Validated format specs, shared by every template and language. Catalogs use a handful of formats,
+    // the bound keeps a long lived daemon from growing it without limit.
+    private static final int MAX_CACHED_FORMATS = 256;
+    private static final Map<String, FormatSpec> FORMATS = new ConcurrentHashMap<>();
+
     private final List<Part> parts;
 
     private final List<Part.Variable> variables;
@@ -24,140 +32,199 @@ public class Template {
                 .collect(Collectors.toList());
     }
 
-    public static Template parse(final String template) throws ProcessorException {
-        final ArrayList<Part> parts = new ArrayList<>();
-        final StringBuilder builder = new StringBuilder();
-
-        boolean variable = false;
-        boolean escape = false;
-        for (final char c : template.toCharArray()) {
-            if (variable) {
-                if (c == '}') {
-                    final String[] segments = builder.toString().split(":");
-                    if (segments.length != 2) {
-                        throw new ProcessorException("Unsupported variable: " + builder);
-                    }
-
-                    final String name = segments[0].trim();
-                    if (!name.matches("[a-zA-Z0-9_]+")) {
-                        throw new ProcessorException("Unsupported name " + name + " of " + builder);
-                    }
+    private static String trimmed(final String text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
 
-                    final String format = segments[1].trim();
-                    if (format.isEmpty()) {
-                        throw new ProcessorException("Empty format of variable: " + builder);
-                    }
+        return text.substring(start, end);
+    }
 
-                    final Part.Variable.FormatType type;
-                    final Object testing;
-                    switch (format.charAt(format.length() - 1)) {
-                        case 's': {
-                            type = Part.Variable.FormatType.String;
-                            testing = "";
-                            break;
-                        }
-                        case 'd': {
-                            type = Part.Variable.FormatType.Decimal;
-                            testing = 0;
-                            break;
-                        }
-                        case 'o': {
-                            type = Part.Variable.FormatType.Octal;
-                            testing = 0;
-                            break;
-                        }
-                        case 'x': {
-                            type = Part.Variable.FormatType.Hexadecimal;
-                            testing = 0;
-                            break;
-                        }
-                        case 'f': {
-                            type = Part.Variable.FormatType.Float;
-                            testing = 0.0f;
-                            break;
-                        }
-                        case 'c': {
-                            type = Part.Variable.FormatType.Character;
-                            testing = 'c';
-                            break;
-                        }
-                        default: {
-                            throw new ProcessorException("Unsupported format " + format + " of " + builder);
-                        }
-                    }
+    private static boolean isVariableName(final String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
 
-                    try {
-                        if (format.equals(String.format(Locale.ROOT, format, testing))) {
-                            throw new ProcessorException("Invalid format " + format + " of " + builder);
-                        }
-                    } catch (final IllegalFormatException e) {
-                        throw new ProcessorException("Invalid format " + format + " of " + builder, e);
-                    }
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_')) {
+                return false;
+            }
+        }
 
-                    parts.add(new Part.Variable(name, format, type));
-                    builder.setLength(0);
-                    variable = false;
+        return true;
+    }
 
-                    continue;
-                } else if (c == '{') {
-                    throw new ProcessorException("Duplicate { of " + builder);
-                }
+    private static FormatSpec validateFormat(final String format, final String variable) throws ProcessorException {
+        final FormatSpec cached = FORMATS.get(format);
+        if (cached != null) {
+            return cached;
+        }
 
-                builder.append(c);
+        final Part.Variable.FormatType type;
+        final Object testing;
+        switch (format.charAt(format.length() - 1)) {
+            case 's': {
+                type = Part.Variable.FormatType.String;
+                testing = "";
+                break;
+            }
+            case 'd': {
+                type = Part.Variable.FormatType.Decimal;
+                testing = 0;
+                break;
+            }
+            case 'o': {
+                type = Part.Variable.FormatType.Octal;
+                testing = 0;
+                break;
+            }
+            case 'x': {
+                type = Part.Variable.FormatType.Hexadecimal;
+                testing = 0;
+                break;
+            }
+            case 'f': {
+                type = Part.Variable.FormatType.Float;
+                testing = 0.0f;
+                break;
+            }
+            case 'c': {
+                type = Part.Variable.FormatType.Character;
+                testing = 'c';
+                break;
+            }
+            default: {
+                throw new ProcessorException("Unsupported format " + format + " of " + variable);
+            }
+        }
 
-                continue;
+        try {
+            if (format.equals(String.format(Locale.ROOT, format, testing))) {
+                throw new ProcessorException("Invalid format " + format + " of " + variable);
             }
+        } catch (final IllegalFormatException e) {
+            throw new ProcessorException("Invalid format " + format + " of " + variable, e);
+        }
 
-            if (escape) {
-                switch (c) {
-                    case '\\':
-                        builder.append('\\');
-                        break;
-                    case '{':
-                        builder.append('{');
-                        break;
-                    case '}':
-                        builder.append('}');
-                        break;
-                    default:
-                        throw new ProcessorException("Unsupported escape: " + c);
-                }
+        final FormatSpec spec = new FormatSpec(format, type);
+        if (FORMATS.size() >= MAX_CACHED_FORMATS) {
+            return spec;
+        }
 
-                escape = false;
+        final FormatSpec previous = FORMATS.putIfAbsent(format, spec);
 
-                continue;
+        return previous != null ? previous : spec;
+    }
+
+    // Parses variable starting at '{' of offset, returns offset of the closing '}'.
+    private static int parseVariable(final String template, final int offset, final List<Part> parts) throws ProcessorException {
+        int colon = -1;
+        int colons = 0;
+        int end = offset + 1;
+        for (; end < template.length(); end++) {
+            final char c = template.charAt(end);
+            if (c == '}') {
+                break;
+            } else if (c == '{') {
+                throw new ProcessorException("Duplicate { of " + template.substring(offset + 1, end) + " at offset " + end + ": " + template);
+            } else if (c == ':') {
+                if (colon < 0) {
+                    colon = end;
+                }
+                colons++;
             }
+        }
 
-            if (c == '\\') {
-                escape = true;
+        if (end >= template.length()) {
+            throw new ProcessorException("Unexpected end of line at offset " + offset + ": " + template);
+        }
 
-                continue;
-            }
+        if (colons != 1) {
+            throw new ProcessorException("Unsupported variable: " + template.substring(offset + 1, end) + " at offset " + offset + ": " + template);
+        }
 
-            if (c == '{') {
-                if (builder.length() > 0) {
-                    parts.add(new Part.Literal(builder.toString()));
+        final String name = trimmed(template, offset + 1, colon);
+        if (!isVariableName(name)) {
+            throw new ProcessorException("Unsupported name " + name + " of " + template.substring(offset + 1, end) + " at offset " + offset + ": " + template);
+        }
+
+        final String format = trimmed(template, colon + 1, end);
+        if (format.isEmpty()) {
+            throw new ProcessorException("Empty format of variable: " + template.substring(offset + 1, end) + " at offset " + offset + ": " + template);
+        }
+
+        final FormatSpec spec;
+        try {
+            spec = validateFormat(format, template.substring(offset + 1, end));
+        } catch (final ProcessorException e) {
+            throw new ProcessorException(e.getMessage() + " at offset " + offset + ": " + template, e.getCause());
+        }
+
+        parts.add(new Part.Variable(name, spec.getFormat(), spec.getType()));
+
+        return end;
+    }
 
-                    builder.setLength(0);
+    public static Template parse(final String template) throws ProcessorException {
+        final ArrayList<Part> parts = new ArrayList<>();
+
+        // Escaped literal text, only used once a literal contains escapes.
+        StringBuilder escaped = null;
+        int literalStart = 0;
+        int index = 0;
+        while (index < template.length()) {
+            final char c = template.charAt(index);
+
+            if (c == '\\') {
+                if (index + 1 >= template.length()) {
+                    throw new ProcessorException("Unexpected end of line at offset " + index + ": " + template);
                 }
 
-                variable = true;
+                final char next = template.charAt(index + 1);
+                if (next != '\\' && next != '{' && next != '}') {
+                    throw new ProcessorException("Unsupported escape: " + next + " at offset " + index + ": " + template);
+                }
 
-                continue;
-            }
+                if (escaped == null) {
+                    escaped = new StringBuilder();
+                }
+                escaped.append(template, literalStart, index).append(next);
+
+                index += 2;
+                literalStart = index;
+            } else if (c == '{') {
+                appendLiteral(parts, escaped, template, literalStart, index);
+                if (escaped != null) {
+                    escaped.setLength(0);
+                }
 
-            builder.append(c);
+                index = parseVariable(template, index, parts) + 1;
+                literalStart = index;
+            } else {
+                index++;
+            }
         }
 
-        if (escape || variable) {
-            throw new ProcessorException("Unexpected end of line: " + template);
-        }
+        appendLiteral(parts, escaped, template, literalStart, index);
+
+        return new Template(parts);
+    }
 
-        if (builder.length() > 0) {
-            parts.add(new Part.Literal(builder.toString()));
+    private static void appendLiteral(final List<Part> parts, final StringBuilder escaped, final String template, final int start, final int end) {
+        final String text;
+        if (escaped != null && escaped.length() > 0) {
+            text = escaped.append(template, start, end).toString();
+        } else {
+            text = template.substring(start, end);
         }
 
-        return new Template(parts);
+        if (!text.isEmpty()) {
+            parts.add(new Part.Literal(text));
+        }
     }
 
     @Override
@@ -173,7 +240,13 @@ public class Template {
         }).collect(Collectors.joining());
     }
 
-    public interface Part {
+    @Data
+    private static final class FormatSpec {
+        private final String format;
+        private final Part.Variable.FormatType type;
+    }
+
+    public interface Part extends Serializable {
         @Data
         final class Literal implements Part {
             private final String text;
@@ -188,6 +261,23 @@ public class Template {
             enum FormatType {
                 String, Decimal, Octal, Hexadecimal, Float, Character;
 
+                // Type code of specialized Formatter overloads, reference types share S.
+                public char signatureCode() {
+                    switch (this) {
+                        case Decimal:
+                        case Octal:
+                        case Hexadecimal: {
+                            return 'L';
+                        }
+                        case Float: {
+                            return 'D';
+                        }
+                        default: {
+                            return 'S';
+                        }
+                    }
+                }
+
                 public TypeName kotlinType() {
                     switch (this) {
                         case String: {
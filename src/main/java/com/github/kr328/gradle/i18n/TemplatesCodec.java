@@ -0,0 +1,104 @@
+package com.github.kr328.gradle.i18n;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Canonical binary layout of templates: key names and parts in declared order, same bytes for equal templates.
+public final class TemplatesCodec {
+    private static final byte PART_LITERAL = 0;
+    private static final byte PART_VARIABLE = 1;
+
+    public static void writeString(final DataOutputStream output, final String text) throws IOException {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    public static String readString(final DataInputStream input) throws IOException {
+        final byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void write(final DataOutputStream output, final FlattenTemplates templates) throws IOException {
+        output.writeInt(templates.getTemplates().size());
+        for (final Map.Entry<FlattenTemplates.Key, Template> template : templates.getTemplates().entrySet()) {
+            output.writeInt(template.getKey().getNames().size());
+            for (final String name : template.getKey().getNames()) {
+                writeString(output, name);
+            }
+
+            output.writeInt(template.getValue().getParts().size());
+            for (final Template.Part part : template.getValue().getParts()) {
+                if (part instanceof Template.Part.Literal) {
+                    output.writeByte(PART_LITERAL);
+                    writeString(output, ((Template.Part.Literal) part).getText());
+                } else if (part instanceof Template.Part.Variable) {
+                    final Template.Part.Variable variable = (Template.Part.Variable) part;
+                    output.writeByte(PART_VARIABLE);
+                    writeString(output, variable.getName());
+                    writeString(output, variable.getFormat());
+                    output.writeByte(variable.getType().ordinal());
+                }
+            }
+        }
+    }
+
+    public static FlattenTemplates read(final DataInputStream input, final FlattenTemplates.Interner interner) throws IOException {
+        final int count = input.readInt();
+        final LinkedHashMap<FlattenTemplates.Key, Template> templates = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            final int namesCount = input.readInt();
+            final List<String> names = new ArrayList<>(namesCount);
+            for (int n = 0; n < namesCount; n++) {
+                names.add(readString(input));
+            }
+
+            final int partsCount = input.readInt();
+            final List<Template.Part> parts = new ArrayList<>(partsCount);
+            for (int p = 0; p < partsCount; p++) {
+                final byte type = input.readByte();
+                if (type == PART_LITERAL) {
+                    parts.add(new Template.Part.Literal(readString(input)));
+                } else if (type == PART_VARIABLE) {
+                    final String name = readString(input);
+                    final String format = readString(input);
+                    final Template.Part.Variable.FormatType formatType = Template.Part.Variable.FormatType.values()[input.readByte()];
+                    parts.add(new Template.Part.Variable(name, format, formatType));
+                } else {
+                    throw new IOException("Unknown template part type " + type);
+                }
+            }
+
+            templates.put(interner.of(names), new Template(parts));
+        }
+
+        return new FlattenTemplates(templates);
+    }
+
+    public static void save(final Path path, final FlattenTemplates templates) throws IOException {
+        Files.createDirectories(path.getParent());
+
+        try (final OutputStream stream = Files.newOutputStream(path); final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream))) {
+            write(output, templates);
+        }
+    }
+
+    public static FlattenTemplates load(final Path path, final FlattenTemplates.Interner interner) throws IOException {
+        try (final InputStream stream = Files.newInputStream(path); final DataInputStream input = new DataInputStream(new BufferedInputStream(stream))) {
+            return read(input, interner);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.github.kr328.gradle.i18n;
 
 import lombok.Data;
 
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -9,27 +10,27 @@ import java.util.Map;
 public final class TreeTemplates {
     private final Child.Container root;
 
-    private static Child.Container createContainerFor(Child.Container root, final FlattenTemplates.Key key) throws ProcessorException {
-        for (final String name : key.getNames()) {
-            final Child child = root.children.computeIfAbsent(name, (_k) -> new Child.Container(new LinkedHashMap<>()));
-            if (!(child instanceof Child.Container)) {
-                throw new ProcessorException("Except container but got value: " + key);
-            }
+    private static Child.Container createContainerFor(final Child.Container root, final FlattenTemplates.Key key) throws ProcessorException {
+        if (key == null) {
+            return root;
+        }
 
-            root = (Child.Container) child;
+        final Child.Container parent = createContainerFor(root, key.getParent());
+        final Child child = parent.children.computeIfAbsent(key.getName(), (_k) -> new Child.Container(new LinkedHashMap<>()));
+        if (!(child instanceof Child.Container)) {
+            throw new ProcessorException("Except container but got value: " + key);
         }
 
-        return root;
+        return (Child.Container) child;
     }
 
-    public static TreeTemplates createFrom(final FlattenTemplates flatten) throws ProcessorException {
+    public static TreeTemplates createFrom(final Collection<FlattenTemplates.Key> keys) throws ProcessorException {
         final Child.Container root = new Child.Container(new LinkedHashMap<>());
 
-        for (final FlattenTemplates.Key key : flatten.getTemplates().keySet()) {
-            final FlattenTemplates.Key containerKey = new FlattenTemplates.Key(key.getNames().subList(0, key.getNames().size() - 1));
-            final Child.Container container = createContainerFor(root, containerKey);
+        for (final FlattenTemplates.Key key : keys) {
+            final Child.Container container = createContainerFor(root, key.getParent());
 
-            container.children.put(key.getNames().get(key.getNames().size() - 1), new Child.Value(key, flatten.getTemplates().get(key)));
+            container.children.put(key.getName(), new Child.Value(key));
         }
 
         return new TreeTemplates(root);
@@ -44,7 +45,6 @@ public final class TreeTemplates {
         @Data
         final class Value implements Child {
             private final FlattenTemplates.Key key;
-            private final Template template;
         }
     }
 }
@@ -0,0 +1,45 @@
+package com.github.kr328.gradle.i18n;
+
+import java.io.IOException;
+import java.io.Writer;
+
+public final class XmlUtils {
+    // Same escaping as the JDK DOM serializer used before, so generated strings.xml stays byte identical.
+    public static void escapeText(final Writer writer, final String text) throws IOException, ProcessorException {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    writer.write("&amp;");
+                    break;
+                case '<':
+                    writer.write("&lt;");
+                    break;
+                case '>':
+                    writer.write("&gt;");
+                    break;
+                case '\t':
+                case '\n':
+                    writer.write(c);
+                    break;
+                default:
+                    if (Character.isHighSurrogate(c)) {
+                        if (i + 1 >= text.length() || !Character.isLowSurrogate(text.charAt(i + 1))) {
+                            throw new ProcessorException("Invalid UTF-16 surrogate in " + text);
+                        }
+
+                        writer.write("&#");
+                        writer.write(Integer.toString(Character.toCodePoint(c, text.charAt(i + 1))));
+                        writer.write(';');
+                        i++;
+                    } else if (c < 0x20 || c >= 0x7f && c <= 0x9f || Character.isLowSurrogate(c)) {
+                        writer.write("&#");
+                        writer.write(Integer.toString(c));
+                        writer.write(';');
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.kr328.gradle.i18n;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class GeneratorTest {
+    private static final String PACKAGE_NAME = "com.example";
+
+    @TempDir
+    Path directory;
+
+    private static FlattenTemplates templates(final String... entries) throws ProcessorException {
+        final FlattenTemplates.Interner interner = new FlattenTemplates.Interner();
+        final Map<FlattenTemplates.Key, Template> templates = new LinkedHashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            templates.put(interner.of(List.of(entries[i].split("\\."))), Template.parse(entries[i + 1]));
+        }
+        return new FlattenTemplates(templates);
+    }
+
+    // Strings of the table by key ordinal, following the header, refs and offsets layout.
+    private static List<String> readTable(final ByteBuffer table) {
+        assertEquals(Generator.JVM_STRING_TABLE_MAGIC, table.getInt(0));
+        assertEquals(Generator.JVM_STRING_TABLE_VERSION, table.getInt(4));
+
+        final int count = table.getInt(8);
+        final int strings = table.getInt(12);
+        final int refsStart = Generator.JVM_STRING_TABLE_HEADER_SIZE;
+        final int offsetsStart = refsStart + count * 4;
+        final int dataStart = offsetsStart + (strings + 1) * 4;
+
+        assertEquals(0, table.getInt(offsetsStart));
+        assertEquals(table.capacity() - dataStart, table.getInt(offsetsStart + strings * 4));
+
+        final List<String> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final int ref = table.getInt(refsStart + i * 4);
+            final int start = table.getInt(offsetsStart + ref * 4);
+            final int end = table.getInt(offsetsStart + (ref + 1) * 4);
+
+            final byte[] bytes = new byte[end - start];
+            table.duplicate().position(dataStart + start).get(bytes);
+            result.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    private ByteBuffer readFile(final String languageTag) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(directory.resolve(Naming.jvmStringTableFile(PACKAGE_NAME, languageTag))));
+    }
+
+    @Test
+    public void stringTableLayout() throws IOException, ProcessorException {
+        final FlattenTemplates root = templates(
+                "ok", "Okay",
+                "hello", "Hello {name: %s}",
+                "container.count", "{n: %d} of {total: %d}",
+                "container.confirm", "Okay"
+        );
+        final Generator generator = new Generator(root, PACKAGE_NAME);
+
+        final long saved = generator.generateJvmStringTable(new OutputSink(directory), null, root);
+
+        final ByteBuffer table = readFile(null);
+        assertEquals(List.of("Okay", "Hello %1$s", "%1$d of %2$d", "Okay"), readTable(table));
+        assertEquals(3, table.getInt(12));
+        assertEquals("Okay".getBytes(StandardCharsets.UTF_8).length, saved);
+    }
+
+    @Test
+    public void stringTableFallsBackToRoot() throws IOException, ProcessorException {
+        final FlattenTemplates root = templates(
+                "ok", "Okay",
+                "hello", "Hello {name: %s}",
+                "container.count", "{n: %d} of {total: %d}"
+        );
+        final FlattenTemplates language = templates(
+                "hello", "你好 {name: %s}",
+                "container.count", "{total: %d} 中 {n: %d}"
+        );
+        final Generator generator = new Generator(root, PACKAGE_NAME);
+
+        generator.generateJvmStringTable(new OutputSink(directory), "zh_CN", language);
+
+        assertEquals(List.of("Okay", "你好 %1$s", "%2$d 中 %1$d"), readTable(readFile("zh_CN")));
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.kr328.gradle.i18n;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class I18nTaskFunctionalTest {
+    private static final FileTime OLD_TIME = FileTime.fromMillis(1000000000000L);
+
+    private static final String BUILD_SCRIPT = "import com.github.kr328.gradle.i18n.*\n" +
+            "\n" +
+            "plugins {\n" +
+            "    id(\"com.github.kr328.gradle.i18n\") apply false\n" +
+            "}\n" +
+            "\n" +
+            "tasks.register<I18nTask>(\"generateI18n\") {\n" +
+            "    i18nDirectory.set(file(\"i18n\"))\n" +
+            "    packageName.set(\"com.example\")\n" +
+            "    languages.add(Language(\"zh\").apply { jvmLanguageTag = \"zh_CN\" })\n" +
+            "    isJvmEnabled.set(true)\n" +
+            "    isAndroidEnabled.set(false)\n" +
+            "    isSparseResourcesEnabled.set(false)\n" +
+            "    jvmBackend.set(JvmBackend.ResourceBundle)\n" +
+            "    androidResourceDirectory.set(layout.buildDirectory.dir(\"generated/androidResource\"))\n" +
+            "    jvmResourceDirectory.set(layout.buildDirectory.dir(\"generated/jvmResource\"))\n" +
+            "    schemaFile.set(layout.buildDirectory.file(\"intermediates/schema.txt\"))\n" +
+            "    stateDirectory.set(layout.buildDirectory.dir(\"intermediates/state\"))\n" +
+            "    cacheDirectory.set(layout.buildDirectory.dir(\"intermediates/cache\"))\n" +
+            "    fallbackReportFile.set(layout.buildDirectory.file(\"reports/fallback.txt\"))\n" +
+            "    metricsReportFile.set(layout.buildDirectory.file(\"reports/metrics.json\"))\n" +
+            "}\n";
+
+    @TempDir
+    Path projectDirectory;
+
+    private void writeFile(final String relativePath, final String content) throws IOException {
+        final Path path = projectDirectory.resolve(relativePath);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content, StandardCharsets.UTF_8);
+    }
+
+    private String readFile(final String relativePath) throws IOException {
+        return Files.readString(projectDirectory.resolve(relativePath), StandardCharsets.UTF_8);
+    }
+
+    private BuildResult build() {
+        return GradleRunner.create()
+                .withProjectDir(projectDirectory.toFile())
+                .withPluginClasspath()
+                .withArguments("generateI18n", "--stacktrace")
+                .build();
+    }
+
+    @Test
+    public void incrementalAddModifyDelete() throws IOException {
+        final String rootBundle = "build/generated/jvmResource/com/example/i18n.properties";
+        final String zhBundle = "build/generated/jvmResource/com/example/i18n_zh_CN.properties";
+
+        writeFile("settings.gradle.kts", "rootProject.name = \"functional\"\n");
+        writeFile("build.gradle.kts", BUILD_SCRIPT);
+        writeFile("i18n/root/strings.yaml", "strings:\n  ok: \"Okay\"\n  hello: \"Hello {name: %s}\"\n");
+        writeFile("i18n/zh/strings.yaml", "strings:\n  ok: \"好\"\n");
+
+        assertEquals(TaskOutcome.SUCCESS, build().task(":generateI18n").getOutcome());
+        assertTrue(readFile(rootBundle).contains("i18n.hello=Hello %1$s"));
+        assertTrue(readFile(zhBundle).contains("i18n.ok=\\u597D"));
+        assertTrue(readFile("build/reports/metrics.json").contains("\"incremental\": 0"));
+
+        assertEquals(TaskOutcome.UP_TO_DATE, build().task(":generateI18n").getOutcome());
+
+        // Added root file, every resource picks up the new key.
+        writeFile("i18n/root/more.yaml", "strings:\n  cancel: \"Cancel\"\n");
+        assertEquals(TaskOutcome.SUCCESS, build().task(":generateI18n").getOutcome());
+        assertTrue(readFile(rootBundle).contains("i18n.cancel=Cancel"));
+        assertTrue(readFile(zhBundle).contains("i18n.cancel=Cancel"));
+        assertTrue(readFile("build/reports/metrics.json").contains("\"incremental\": 1"));
+
+        // Modified language file, root resource is left untouched.
+        Files.setLastModifiedTime(projectDirectory.resolve(rootBundle), OLD_TIME);
+        writeFile("i18n/zh/strings.yaml", "strings:\n  ok: \"好\"\n  cancel: \"取消\"\n");
+        assertEquals(TaskOutcome.SUCCESS, build().task(":generateI18n").getOutcome());
+        assertTrue(readFile(zhBundle).contains("i18n.cancel=\\u53D6\\u6D88"));
+        assertEquals(OLD_TIME, Files.getLastModifiedTime(projectDirectory.resolve(rootBundle)));
+        assertTrue(readFile("build/reports/metrics.json").contains("\"incremental\": 1"));
+
+        // Deleted root file removes its keys, deleted language removes its resource.
+        Files.delete(projectDirectory.resolve("i18n/root/more.yaml"));
+        Files.delete(projectDirectory.resolve("i18n/zh/strings.yaml"));
+        assertEquals(TaskOutcome.SUCCESS, build().task(":generateI18n").getOutcome());
+        assertFalse(readFile(rootBundle).contains("i18n.cancel"));
+        assertFalse(Files.exists(projectDirectory.resolve(zhBundle)));
+        assertTrue(readFile("build/reports/metrics.json").contains("\"incremental\": 1"));
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.kr328.gradle.i18n;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OutputSinkTest {
+    private static final FileTime OLD_TIME = FileTime.fromMillis(1000000000000L);
+
+    @TempDir
+    Path directory;
+
+    private List<String> listFiles() throws IOException {
+        try (final Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile)
+                    .map(path -> directory.relativize(path).toString().replace('\\', '/'))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void writeOnlyIfChanged() throws IOException {
+        final OutputSink sink = new OutputSink(directory);
+        final Path path = directory.resolve("a/b.txt");
+
+        assertTrue(sink.write("a/b.txt", "content", StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(path, OLD_TIME);
+
+        assertFalse(sink.write("a/b.txt", "content", StandardCharsets.UTF_8));
+        assertEquals(OLD_TIME, Files.getLastModifiedTime(path));
+
+        assertTrue(sink.write("a/b.txt", "changed", StandardCharsets.UTF_8));
+        assertEquals("changed", Files.readString(path));
+    }
+
+    @Test
+    public void stagedWriterPublishesOnCommit() throws IOException {
+        final OutputSink sink = new OutputSink(directory);
+        final Path path = directory.resolve("values/strings.xml");
+
+        try (final OutputSink.StagedWriter writer = sink.openWriter("values/strings.xml", StandardCharsets.UTF_8)) {
+            writer.write("first");
+            writer.commit();
+        }
+        assertEquals("first", Files.readString(path));
+        assertEquals(List.of("values/strings.xml"), listFiles());
+
+        Files.setLastModifiedTime(path, OLD_TIME);
+        try (final OutputSink.StagedWriter writer = sink.openWriter("values/strings.xml", StandardCharsets.UTF_8)) {
+            writer.write("first");
+            writer.commit();
+        }
+        assertEquals(OLD_TIME, Files.getLastModifiedTime(path));
+        assertEquals(List.of("values/strings.xml"), listFiles());
+    }
+
+    @Test
+    public void stagedWriterKeepsTargetOnFailure() throws IOException {
+        final OutputSink sink = new OutputSink(directory);
+        final Path path = directory.resolve("values/strings.xml");
+        sink.write("values/strings.xml", "previous", StandardCharsets.UTF_8);
+
+        assertThrows(IllegalStateException.class, () -> {
+            try (final OutputSink.StagedWriter writer = sink.openWriter("values/strings.xml", StandardCharsets.UTF_8)) {
+                writer.write("truncated");
+                throw new IllegalStateException("generation failed");
+            }
+        });
+
+        assertEquals("previous", Files.readString(path));
+        assertEquals(List.of("values/strings.xml"), listFiles());
+    }
+
+    @Test
+    public void commitAfterCloseFails() throws IOException {
+        final OutputSink sink = new OutputSink(directory);
+        final OutputSink.StagedWriter writer = sink.openWriter("a.txt", StandardCharsets.UTF_8);
+        writer.close();
+
+        assertThrows(IOException.class, writer::commit);
+        assertFalse(Files.exists(directory.resolve("a.txt")));
+    }
+
+    @Test
+    public void sweepRemovesUnproducedFiles() throws IOException {
+        final OutputSink previous = new OutputSink(directory);
+        previous.write("keep/written.txt", "a", StandardCharsets.UTF_8);
+        previous.write("keep/retained.txt", "b", StandardCharsets.UTF_8);
+        previous.write("stale/old.txt", "c", StandardCharsets.UTF_8);
+
+        final OutputSink sink = new OutputSink(directory);
+        sink.write("keep/written.txt", "a", StandardCharsets.UTF_8);
+        sink.retain("keep/retained.txt");
+        sink.sweep();
+
+        assertEquals(List.of("keep/retained.txt", "keep/written.txt"), listFiles());
+        assertFalse(Files.exists(directory.resolve("stale")));
+    }
+}
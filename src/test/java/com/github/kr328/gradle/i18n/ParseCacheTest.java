@@ -0,0 +1,100 @@
+package com.github.kr328.gradle.i18n;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ParseCacheTest {
+    private static final String CONTENT = "strings:\n" +
+            "  ok: \"Okay\"\n" +
+            "  number: 0x10\n" +
+            "  container:\n" +
+            "    count: \"Count {n: %d} of {total: %d} ratio {r: %.2f}\"\n" +
+            "    nested:\n" +
+            "      hello: \"Hello {name: %s}\\n\\\\{escaped\\\\}\"\n";
+
+    @TempDir
+    Path directory;
+
+    private Path writeSource(final String name, final String content) throws IOException {
+        final Path path = directory.resolve(name);
+        Files.writeString(path, content, StandardCharsets.UTF_8);
+        return path;
+    }
+
+    private List<Path> listEntries(final Path cacheDirectory) throws IOException {
+        try (final Stream<Path> files = Files.list(cacheDirectory)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException, ProcessorException {
+        final Path source = writeSource("strings.yaml", CONTENT);
+        final FlattenTemplates expected = Parser.parseFile(source);
+
+        final ParseCache first = new ParseCache(directory.resolve("cache"), "1.0");
+        assertEquals(expected, first.parseFile(source));
+        assertEquals(0, first.getHits());
+
+        final ParseCache second = new ParseCache(directory.resolve("cache"), "1.0");
+        final FlattenTemplates cached = second.parseFile(source);
+        assertEquals(1, second.getHits());
+        assertEquals(expected, cached);
+        assertEquals(new ArrayList<>(expected.getTemplates().keySet()), new ArrayList<>(cached.getTemplates().keySet()));
+    }
+
+    @Test
+    public void pluginVersionInvalidates() throws IOException, ProcessorException {
+        final Path source = writeSource("strings.yaml", CONTENT);
+
+        new ParseCache(directory.resolve("cache"), "1.0").parseFile(source);
+
+        final ParseCache cache = new ParseCache(directory.resolve("cache"), "2.0");
+        assertEquals(Parser.parseFile(source), cache.parseFile(source));
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void corruptEntryIsReparsed() throws IOException, ProcessorException {
+        final Path source = writeSource("strings.yaml", CONTENT);
+        final Path cacheDirectory = directory.resolve("cache");
+
+        new ParseCache(cacheDirectory, "1.0").parseFile(source);
+        for (final Path entry : listEntries(cacheDirectory)) {
+            Files.write(entry, new byte[]{1, 2, 3});
+        }
+
+        final ParseCache cache = new ParseCache(cacheDirectory, "1.0");
+        assertEquals(Parser.parseFile(source), cache.parseFile(source));
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void pruneRemovesUnusedEntries() throws IOException, ProcessorException {
+        final Path first = writeSource("first.yaml", CONTENT);
+        final Path second = writeSource("second.yaml", "strings:\n  other: \"Other\"\n");
+        final Path cacheDirectory = directory.resolve("cache");
+
+        final ParseCache full = new ParseCache(cacheDirectory, "1.0");
+        full.parseFile(first);
+        full.parseFile(second);
+        assertEquals(2, listEntries(cacheDirectory).size());
+
+        final ParseCache partial = new ParseCache(cacheDirectory, "1.0");
+        partial.parseFile(second);
+        partial.prune();
+        assertEquals(1, listEntries(cacheDirectory).size());
+        assertEquals(1, partial.getHits());
+    }
+}
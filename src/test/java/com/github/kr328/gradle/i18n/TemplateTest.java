@@ -0,0 +1,85 @@
+package com.github.kr328.gradle.i18n;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TemplateTest {
+    @Test
+    public void parseLiteral() throws ProcessorException {
+        final Template template = Template.parse("Hello world");
+
+        assertEquals(List.of(new Template.Part.Literal("Hello world")), template.getParts());
+        assertTrue(template.getVariables().isEmpty());
+    }
+
+    @Test
+    public void parseEmpty() throws ProcessorException {
+        assertTrue(Template.parse("").getParts().isEmpty());
+    }
+
+    @Test
+    public void parseVariables() throws ProcessorException {
+        final Template template = Template.parse("Count {n: %d} of { total : %d } ratio {r: %.2f}: {name: %s}");
+
+        assertEquals(
+                List.of(
+                        new Template.Part.Literal("Count "),
+                        new Template.Part.Variable("n", "%d", Template.Part.Variable.FormatType.Decimal),
+                        new Template.Part.Literal(" of "),
+                        new Template.Part.Variable("total", "%d", Template.Part.Variable.FormatType.Decimal),
+                        new Template.Part.Literal(" ratio "),
+                        new Template.Part.Variable("r", "%.2f", Template.Part.Variable.FormatType.Float),
+                        new Template.Part.Literal(": "),
+                        new Template.Part.Variable("name", "%s", Template.Part.Variable.FormatType.String)
+                ),
+                template.getParts()
+        );
+        assertEquals(4, template.getVariables().size());
+    }
+
+    @Test
+    public void parseFormatTypes() throws ProcessorException {
+        final Template template = Template.parse("{a: %x}{b: %o}{c: %08d}");
+
+        assertEquals(Template.Part.Variable.FormatType.Hexadecimal, template.getVariables().get(0).getType());
+        assertEquals(Template.Part.Variable.FormatType.Octal, template.getVariables().get(1).getType());
+        assertEquals(Template.Part.Variable.FormatType.Decimal, template.getVariables().get(2).getType());
+    }
+
+    @Test
+    public void parseEscapes() throws ProcessorException {
+        final Template template = Template.parse("\\{not: %s\\} \\\\ {v: %s}");
+
+        assertEquals(
+                List.of(
+                        new Template.Part.Literal("{not: %s} \\ "),
+                        new Template.Part.Variable("v", "%s", Template.Part.Variable.FormatType.String)
+                ),
+                template.getParts()
+        );
+    }
+
+    @Test
+    public void parseRoundTrip() throws ProcessorException {
+        final String text = "Hello {name: %s}, {n: %d} items";
+
+        assertEquals(text, Template.parse(text).toString());
+    }
+
+    @Test
+    public void rejectInvalid() {
+        assertThrows(ProcessorException.class, () -> Template.parse("{name %s}"));
+        assertThrows(ProcessorException.class, () -> Template.parse("{name: %s"));
+        assertThrows(ProcessorException.class, () -> Template.parse("{{name: %s}"));
+        assertThrows(ProcessorException.class, () -> Template.parse("{na-me: %s}"));
+        assertThrows(ProcessorException.class, () -> Template.parse("{name: }"));
+        assertThrows(ProcessorException.class, () -> Template.parse("{name: %q}"));
+        assertThrows(ProcessorException.class, () -> Template.parse("\\n"));
+        assertThrows(ProcessorException.class, () -> Template.parse("trailing \\"));
+    }
+}